@@ -1,28 +1,231 @@
 package dev.jfxde.data.dao;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import dev.jfxde.data.entity.DataRoot;
+import one.microstream.persistence.types.Storer;
 import one.microstream.storage.types.EmbeddedStorage;
 import one.microstream.storage.types.EmbeddedStorageManager;
 
+/**
+ * Stores entities behind the callers' back. Stored instances are collected
+ * as dirty and repeated stores of the same instance are coalesced. After the
+ * store interval, all dirty instances are serialized by one storer on the
+ * thread which owns the entities, given as the model executor, and the storer
+ * is committed on a background thread. Failed commits are retried with a
+ * growing delay. On shutdown, the dirty instances are committed synchronously.
+ */
 public class StorageManager {
 
+    public static final long DEFAULT_STORE_INTERVAL = 1000;
+    private static final int MAX_RETRIES = 5;
+    private static final long MAX_RETRY_DELAY = 60_000;
+    private static final Logger LOGGER = Logger.getLogger(StorageManager.class.getName());
+
     private EmbeddedStorageManager storageManager;
+    private final Executor modelExecutor;
+    private final long storeInterval;
+    private final Set<Object> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "storage");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> scheduledCommit;
+    private int failures;
+    private volatile boolean closed;
 
     public StorageManager(DataRoot dataRoot, File dir) {
+        this(dataRoot, dir, Runnable::run, DEFAULT_STORE_INTERVAL);
+    }
+
+    /**
+     * @param dataRoot root of the stored entities
+     * @param dir storage directory
+     * @param modelExecutor executor of the thread which modifies the entities
+     * @param storeInterval milliseconds between a store and its commit
+     */
+    public StorageManager(DataRoot dataRoot, File dir, Executor modelExecutor, long storeInterval) {
         storageManager = EmbeddedStorage.start(dataRoot, dir);
+        this.modelExecutor = modelExecutor;
+        this.storeInterval = storeInterval;
     }
 
     public void storeRoot() {
+        commit();
         storageManager.storeRoot();
     }
 
+    /**
+     * Must be called on the thread which modifies the entities.
+     */
     public void store(Object instance) {
-        storageManager.store(instance);
+
+        synchronized (dirty) {
+            dirty.add(instance);
+
+            if (!executor.isShutdown()) {
+                schedule();
+                return;
+            }
+        }
+
+        if (!closed) {
+            commit();
+        }
+    }
+
+    // Must be called with the dirty lock held.
+    private void schedule() {
+        if (scheduledCommit == null && !executor.isShutdown()) {
+            long delay = failures == 0 ? storeInterval : Math.min(storeInterval << failures, MAX_RETRY_DELAY);
+            scheduledCommit = executor.schedule(() -> modelExecutor.execute(this::commitLater), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Serializes on the model thread and commits on the storage thread.
+    private void commitLater() {
+        if (closed) {
+            return;
+        }
+
+        Commit commit = serialize();
+
+        if (commit == null) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> write(commit));
+        } catch (RejectedExecutionException e) {
+            write(commit);
+        }
+    }
+
+    /**
+     * Commits all dirty instances synchronously. Must be called on the
+     * thread which modifies the entities.
+     */
+    public void commit() {
+        Commit commit = serialize();
+
+        if (commit != null) {
+            write(commit);
+        }
+    }
+
+    private Commit serialize() {
+        List<Object> instances;
+
+        synchronized (dirty) {
+            instances = new ArrayList<>(dirty);
+            dirty.clear();
+
+            if (scheduledCommit != null) {
+                scheduledCommit.cancel(false);
+                scheduledCommit = null;
+            }
+        }
+
+        if (instances.isEmpty()) {
+            return null;
+        }
+
+        try {
+            Storer storer = storageManager.createStorer();
+            instances.forEach(storer::store);
+
+            return new Commit(storer, instances);
+        } catch (RuntimeException e) {
+            failed(instances, e);
+
+            return null;
+        }
+    }
+
+    private synchronized void write(Commit commit) {
+        try {
+            commit.storer.commit();
+
+            synchronized (dirty) {
+                failures = 0;
+            }
+        } catch (RuntimeException e) {
+            failed(commit.instances, e);
+        }
+    }
+
+    // The instances stay dirty for the next commit unless it failed too often.
+    private void failed(List<Object> instances, RuntimeException e) {
+        synchronized (dirty) {
+            failures++;
+
+            if (failures > MAX_RETRIES) {
+                LOGGER.log(Level.SEVERE, "Giving up storing " + instances.size() + " instances after " + MAX_RETRIES + " retries", e);
+                failures = 0;
+            } else {
+                LOGGER.log(Level.WARNING, e.getMessage(), e);
+                dirty.addAll(instances);
+                schedule();
+            }
+        }
     }
 
+    /**
+     * Must be called on the thread which modifies the entities.
+     */
     public void shutdown() {
+        executor.shutdown();
+
+        synchronized (dirty) {
+            if (scheduledCommit != null) {
+                scheduledCommit.cancel(false);
+                scheduledCommit = null;
+            }
+        }
+
+        try {
+            executor.awaitTermination(60, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // The final commit is retried at once as there is no later one.
+        for (int i = 0; i <= MAX_RETRIES && hasDirty(); i++) {
+            commit();
+        }
+
+        closed = true;
         storageManager.shutdown();
     }
+
+    private boolean hasDirty() {
+        synchronized (dirty) {
+            return !dirty.isEmpty();
+        }
+    }
+
+    private static class Commit {
+
+        private final Storer storer;
+        private final List<Object> instances;
+
+        Commit(Storer storer, List<Object> instances) {
+            this.storer = storer;
+            this.instances = instances;
+        }
+    }
 }
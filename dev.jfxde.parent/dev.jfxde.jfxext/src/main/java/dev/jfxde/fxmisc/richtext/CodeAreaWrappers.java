@@ -11,7 +11,6 @@ import static org.fxmisc.wellbehaved.event.InputMap.sequence;
 
 import java.nio.file.Path;
 import java.time.Duration;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -22,17 +21,19 @@ import java.util.function.Function;
 
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.GenericStyledArea;
-import org.fxmisc.richtext.model.StyleSpan;
 import org.fxmisc.richtext.model.StyleSpans;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
 import org.fxmisc.wellbehaved.event.Nodes;
 
 import dev.jfxde.j.nio.file.XFiles;
+import dev.jfxde.jfx.concurrent.CTask;
 import dev.jfxde.jx.tools.Lexer;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.geometry.Bounds;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
+import javafx.util.Pair;
 
 public final class CodeAreaWrappers {
 
@@ -40,6 +41,8 @@ public final class CodeAreaWrappers {
     private String fileName;
     private String language;
     private Lexer lexer;
+    private long version;
+    private Task<?> highlightTask;
 
     private  FindWrapper findWrapper;
 
@@ -90,6 +93,20 @@ public final class CodeAreaWrappers {
     }
 
     public CodeAreaWrappers highlighting(AtomicBoolean disableHighlight) {
+        return highlighting(disableHighlight, Task::run);
+    }
+
+    public CodeAreaWrappers highlighting(Consumer<Task<?>> executor) {
+        return highlighting(new AtomicBoolean(), executor);
+    }
+
+    /**
+     * Tokenizes the text and builds the style spans by tasks passed to the
+     * executor. A task works on a snapshot of the text and is cancelled when a
+     * newer change arrives. Its result is applied only if the text has not
+     * changed since the snapshot.
+     */
+    public CodeAreaWrappers highlighting(AtomicBoolean disableHighlight, Consumer<Task<?>> executor) {
 
         if (getLexer() == null) {
             return this;
@@ -98,6 +115,11 @@ public final class CodeAreaWrappers {
         var blockEndWrapper = new BlockEndWrapper<>(area);
         var highlightWrapper = new HighlightWrapper(area, getLexer());
 
+        area.plainTextChanges().subscribe(ch -> {
+            version++;
+            getLexer().change(ch.getPosition(), ch.getRemovalEnd() - ch.getPosition(), ch.getInsertionEnd() - ch.getPosition());
+        });
+
         area.richChanges()
                 .filter(ch -> !ch.toPlainTextChange().getInserted().equals(ch.toPlainTextChange().getRemoved()))
                 .successionEnds(Duration.ofMillis(100))
@@ -106,39 +128,46 @@ public final class CodeAreaWrappers {
                         return;
                     }
 
+                    if (highlightTask != null) {
+                        highlightTask.cancel();
+                    }
+
                     var plainChange = ch.toPlainTextChange();
-                    int insertionEnd = plainChange.getInsertionEnd();
-                    int caretPosition = area.getCaretPosition();
+                    String text = area.getText();
+                    long taskVersion = version;
 
-                    // Use List not StyleSpansBuilder, StyleSpansBuilder merges styles immediately.
-                    List<StyleSpan<Collection<String>>> spans = new ArrayList<>();
+                    CTask<Pair<Lexer.Tokenization, StyleSpans<Collection<String>>>> task = CTask.create(() -> createStyleSpans(text))
+                            .onSucceeded(p -> {
+                                if (p == null || taskVersion != version) {
+                                    return;
+                                }
 
-                    var end = getLexer().tokenize(area.getText(), caretPosition, (lastEnd, t) -> {
-                        spans.add(new StyleSpan<>(Collections.emptyList(), t.getStart() - lastEnd));
-                        StyleSpan<Collection<String>> styleSpan = new StyleSpan<>(t.getStyle(), t.getLength());
-                        spans.add(styleSpan);
-                    });
+                                highlightWrapper.resetTokens(highlightWrapper.getHighlightedTokens(), p.getKey());
+                                getLexer().apply(p.getKey(), area.getCaretPosition());
 
-                    highlightWrapper.setToken(getLexer().getTokenOnCaretPosition());
-                    highlightWrapper.setAreaLength(area.getLength());
+                                highlightWrapper.setToken(getLexer().getTokenOnCaretPosition());
+                                highlightWrapper.setAreaLength(area.getLength());
 
-                    StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
-                    spansBuilder.addAll(spans);
-                    spansBuilder.add(Collections.emptyList(), area.getText().length() - end);
-                    StyleSpans<Collection<String>> styleSpans = spansBuilder.create();
+                                if (p.getValue() != null) {
+                                    area.setStyleSpans(p.getKey().getStart(), p.getValue());
+                                }
 
-                    area.setStyleSpans(0, styleSpans);
+                                highlightWrapper.styleToken();
 
-                    var tokenOnCaret = getLexer().getTokenOnCaretPosition();
+                                var tokenOnCaret = getLexer().getTokenOnCaretPosition();
 
-                    if (insertionEnd == area.getCaretPosition() && tokenOnCaret != null &&
-                            tokenOnCaret.isClose() && tokenOnCaret.getValue().equals(plainChange.getInserted())) {
-                        blockEndWrapper.indentEnd(tokenOnCaret);
-                    }
+                                if (plainChange.getInsertionEnd() == area.getCaretPosition() && tokenOnCaret != null &&
+                                        tokenOnCaret.isClose() && tokenOnCaret.getValue().equals(plainChange.getInserted())) {
+                                    blockEndWrapper.indentEnd(tokenOnCaret);
+                                }
 
-                    if (findWrapper != null) {
-                        findWrapper.afterReplace();
-                    }
+                                if (findWrapper != null) {
+                                    findWrapper.afterReplace();
+                                }
+                            });
+
+                    highlightTask = task;
+                    executor.accept(task);
                 });
 
         area.caretPositionProperty().addListener((v, o, n) -> {
@@ -148,6 +177,30 @@ public final class CodeAreaWrappers {
         return this;
     }
 
+    private Pair<Lexer.Tokenization, StyleSpans<Collection<String>>> createStyleSpans(String text) {
+        StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+
+        // Only the range affected by the changes is re-tokenized and re-styled.
+        // The styles are copied because the highlighting of delimiters changes the styles of the tokens.
+        var tokenization = getLexer().tokenizeChange(text, (lastEnd, t) -> {
+            spansBuilder.add(Collections.emptyList(), t.getStart() - lastEnd);
+            spansBuilder.add(List.copyOf(t.getStyle()), t.getLength());
+        });
+
+        if (tokenization == null) {
+            return null;
+        }
+
+        StyleSpans<Collection<String>> styleSpans = null;
+
+        if (tokenization.getEnd() > tokenization.getStart()) {
+            spansBuilder.add(Collections.emptyList(), tokenization.getEnd() - tokenization.getLastEnd());
+            styleSpans = spansBuilder.create();
+        }
+
+        return new Pair<>(tokenization, styleSpans);
+    }
+
     public CodeAreaWrappers completion(Consumer<Consumer<Collection<CompletionItem>>> complete, Function<DocRef, String> documentation) {
         area.getStylesheets().add(getClass().getResource("completion.css").toExternalForm());
         CompletionPopup codeCompletion = new CompletionPopup(documentation);
@@ -1,5 +1,6 @@
 package dev.jfxde.fxmisc.richtext;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
@@ -9,10 +10,14 @@ import org.fxmisc.richtext.StyleClassedTextArea;
 
 import dev.jfxde.j.util.search.Searcher;
 import dev.jfxde.j.util.search.SearchResult;
+import dev.jfxde.j.util.search.SearchTimeoutException;
+import dev.jfxde.jfx.util.FXResourceBundle;
 import javafx.beans.binding.Bindings;
+import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ReadOnlyStringProperty;
 import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -23,10 +28,12 @@ public class FindWrapper extends StyleClassedTextAreaWrapper {
 
     private static final String FIND_STYLE = "jd-find";
     private static final String FIND_STYLE_SELECTED = "jd-find-selected";
+    private static final Duration FIND_TIMEOUT = Duration.ofSeconds(2);
     private Pattern pattern;
     private IntegerProperty index = new SimpleIntegerProperty(-1);
     private ObservableList<SearchResult> searchResults = FXCollections.observableArrayList();
     private ReadOnlyStringWrapper foundCount = new ReadOnlyStringWrapper();
+    private BooleanProperty timedOut = new SimpleBooleanProperty();
     private boolean inSelection;
     private IndexRange selection;
     private boolean replace;
@@ -36,7 +43,8 @@ public class FindWrapper extends StyleClassedTextAreaWrapper {
         super(area);
 
         area.textProperty().addListener((v, o, n) -> reset());
-        foundCount.bind(Bindings.createStringBinding(() -> getIndex() + 1 + "/" + searchResults.size(), index, searchResults));
+        foundCount.bind(Bindings.createStringBinding(() -> getIndex() + 1 + "/" + searchResults.size()
+                + (timedOut.get() ? " (" + FXResourceBundle.getBundle().getString​("timedOut") + ")" : ""), index, searchResults, timedOut));
     }
 
     public ObservableList<SearchResult> getSearchResults() {
@@ -57,6 +65,7 @@ public class FindWrapper extends StyleClassedTextAreaWrapper {
         if (!replace && !replaceAll) {
             searchResults.clear();
             setIndex(-1);
+            timedOut.set(false);
             pattern = null;
             inSelection = false;
             selection = null;
@@ -195,14 +204,20 @@ public class FindWrapper extends StyleClassedTextAreaWrapper {
         this.inSelection = inSelection;
         searchResults.forEach(i -> removeStyle(i.getStart(), i.getEnd(), List.of(FIND_STYLE, FIND_STYLE_SELECTED)));
         searchResults.clear();
+        timedOut.set(false);
 
         if (pattern != null) {
 
-            Searcher.get().search(area.getText().lines(), getTextStart(inSelection), getTextEnd(inSelection), pattern, r -> {
-                addStyle(r.getStart(), r.getEnd(), List.of(FIND_STYLE));
-                searchResults.add(r);
-                return true;
-            });
+            try {
+                Searcher.get().timeout(FIND_TIMEOUT).search(area.getText(), getTextStart(inSelection), getTextEnd(inSelection), pattern, r -> {
+                    addStyle(r.getStart(), r.getEnd(), List.of(FIND_STYLE));
+                    searchResults.add(r);
+                    return true;
+                });
+            } catch (SearchTimeoutException e) {
+                // The results found so far are kept.
+                timedOut.set(true);
+            }
         }
 
         if (searchResults.isEmpty()) {
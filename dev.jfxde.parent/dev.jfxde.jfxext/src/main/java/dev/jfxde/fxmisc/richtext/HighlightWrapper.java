@@ -1,5 +1,6 @@
 package dev.jfxde.fxmisc.richtext;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.fxmisc.richtext.CodeArea;
@@ -56,6 +57,41 @@ public class HighlightWrapper extends GenericStyledAreaWrapper<CodeArea> {
         }
     }
 
+    List<Token> getHighlightedTokens() {
+        List<Token> tokens = new ArrayList<>();
+
+        if (token != null && token.isDelimiter()) {
+            tokens.add(token);
+            tokens.add(token.getOppositeToken());
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Restores the style of the previously highlighted delimiters which are
+     * outside the range re-tokenized after a change. Must be called before
+     * the tokenization is applied to the lexer, which shifts the tokens.
+     */
+    void resetTokens(List<Token> tokens, Lexer.Tokenization tokenization) {
+        tokens.forEach(t -> {
+            int start = tokenization.map(t.getStart());
+
+            if (start >= 0) {
+                t.resetStyle();
+                area.setStyle(start, start + t.getLength(), t.getStyle());
+            }
+        });
+
+        token = null;
+    }
+
+    void styleToken() {
+        if (token != null && token.isDelimiter()) {
+            highlightDelimiter();
+        }
+    }
+
     void setAreaLength(int areaLength) {
         this.areaLength = areaLength;
     }
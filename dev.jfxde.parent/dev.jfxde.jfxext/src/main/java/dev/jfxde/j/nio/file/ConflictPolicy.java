@@ -0,0 +1,22 @@
+package dev.jfxde.j.nio.file;
+
+/**
+ * What to do when the target of a copy or a move exists.
+ */
+public enum ConflictPolicy {
+
+    /**
+     * Use a unique name, e.g. file1.txt.
+     */
+    RENAME,
+
+    /**
+     * Replace the existing target when the transfer is complete.
+     */
+    OVERWRITE,
+
+    /**
+     * Leave the source alone.
+     */
+    SKIP
+}
@@ -0,0 +1,173 @@
+package dev.jfxde.j.nio.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Detects whether files are text or binary and the charset of text files
+ * from their first block. Results are cached by path and reused until the
+ * size or the modification time of the file changes.
+ * <p>
+ * A byte order mark decides the charset. Without it, a block with a NUL byte
+ * is binary, a block which is valid UTF-8 is UTF-8, and any other block is
+ * text in a single byte charset unless it has many control characters.
+ */
+public final class ContentDetector {
+
+    private static final int BLOCK_SIZE = 8192;
+    private static final int MAX_ENTRIES = 4096;
+    private static final ContentInfo BINARY = new ContentInfo(false, StandardCharsets.ISO_8859_1, false);
+    private static final ContentInfo UTF_8 = new ContentInfo(true, StandardCharsets.UTF_8, false);
+    private static final Map<Path, CacheEntry> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, CacheEntry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private ContentDetector() {
+    }
+
+    public static ContentInfo detect(Path path) throws IOException {
+        return detect(path, Files.readAttributes(path, BasicFileAttributes.class));
+    }
+
+    /**
+     * @param attrs attributes of the file, used to validate the cached result
+     */
+    public static ContentInfo detect(Path path, BasicFileAttributes attrs) throws IOException {
+        long modified = attrs.lastModifiedTime().toMillis();
+        CacheEntry entry;
+
+        synchronized (CACHE) {
+            entry = CACHE.get(path);
+        }
+
+        if (entry != null && entry.size == attrs.size() && entry.modified == modified) {
+            return entry.info;
+        }
+
+        var info = detectContent(path);
+
+        synchronized (CACHE) {
+            CACHE.put(path, new CacheEntry(attrs.size(), modified, info));
+        }
+
+        return info;
+    }
+
+    private static ContentInfo detectContent(Path path) throws IOException {
+        var block = new byte[BLOCK_SIZE];
+        int length = 0;
+
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+
+            while (length < block.length && (read = in.read(block, length, block.length - length)) != -1) {
+                length += read;
+            }
+        }
+
+        return detect(block, length, length == block.length);
+    }
+
+    static ContentInfo detect(byte[] block, int length, boolean truncated) {
+        if (startsWith(block, length, 0xEF, 0xBB, 0xBF)) {
+            return new ContentInfo(true, StandardCharsets.UTF_8, true);
+        } else if (startsWith(block, length, 0xFE, 0xFF)) {
+            return new ContentInfo(true, StandardCharsets.UTF_16BE, true);
+        } else if (startsWith(block, length, 0xFF, 0xFE)) {
+            return new ContentInfo(true, StandardCharsets.UTF_16LE, true);
+        }
+
+        int controls = 0;
+
+        for (int i = 0; i < length; i++) {
+            int b = block[i] & 0xFF;
+
+            if (b == 0) {
+                return BINARY;
+            } else if (b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f' && b != '\b' && b != 0x1B || b == 0x7F) {
+                controls++;
+            }
+        }
+
+        if (controls > length / 16) {
+            return BINARY;
+        }
+
+        if (isUtf8(block, length, truncated)) {
+            return UTF_8;
+        }
+
+        Charset charset = Charset.defaultCharset();
+
+        if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)) {
+            // Decodes every byte.
+            charset = StandardCharsets.ISO_8859_1;
+        }
+
+        return new ContentInfo(true, charset, false);
+    }
+
+    private static boolean startsWith(byte[] block, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if ((block[i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks the UTF-8 structure of the bytes. A sequence cut by the end of a
+     * truncated block is valid if its bytes so far are.
+     */
+    private static boolean isUtf8(byte[] block, int length, boolean truncated) {
+        for (int i = 0; i < length;) {
+            int b = block[i] & 0xFF;
+            int continuations = b < 0x80 ? 0 : b >= 0xC2 && b < 0xE0 ? 1 : b >= 0xE0 && b < 0xF0 ? 2 : b >= 0xF0 && b < 0xF5 ? 3 : -1;
+
+            if (continuations < 0 || !truncated && i + continuations >= length) {
+                return false;
+            }
+
+            for (int j = i + 1; j <= i + continuations && j < length; j++) {
+                if ((block[j] & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+
+            i += continuations + 1;
+        }
+
+        return true;
+    }
+
+    private static class CacheEntry {
+
+        private final long size;
+        private final long modified;
+        private final ContentInfo info;
+
+        CacheEntry(long size, long modified, ContentInfo info) {
+            this.size = size;
+            this.modified = modified;
+            this.info = info;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package dev.jfxde.j.nio.file;
+
+import java.nio.charset.Charset;
+
+/**
+ * Kind and charset of file content.
+ */
+public final class ContentInfo {
+
+    private final boolean text;
+    private final Charset charset;
+    private final boolean bom;
+
+    ContentInfo(boolean text, Charset charset, boolean bom) {
+        this.text = text;
+        this.charset = charset;
+        this.bom = bom;
+    }
+
+    public boolean isText() {
+        return text;
+    }
+
+    /**
+     * Returns the charset of text content. The byte order mark, if any, is
+     * decoded as U+FEFF so that the text can be encoded back unchanged.
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public boolean hasBom() {
+        return bom;
+    }
+
+    @Override
+    public String toString() {
+        return text ? "text; charset=" + charset + (bom ? "; bom" : "") : "binary";
+    }
+}
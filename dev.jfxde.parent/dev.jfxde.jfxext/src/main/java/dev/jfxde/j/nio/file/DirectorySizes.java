@@ -0,0 +1,182 @@
+package dev.jfxde.j.nio.file;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Computes the total size of the files in directory trees on a fork-join
+ * pool, one task per directory.
+ * <p>
+ * The listing of a directory, i.e. the size of its files and the names of its
+ * subdirectories, is cached until the modification time of the directory
+ * changes. The total of a directory is cached until the directory or one of
+ * its subdirectories is invalidated, e.g. on a watch event. A total computed
+ * while its directory was invalidated is not cached. Files modified in
+ * place do not change the modification time of their directory, so they are
+ * only noticed after an invalidation or a refresh.
+ */
+public final class DirectorySizes {
+
+    private static final Logger LOGGER = Logger.getLogger(DirectorySizes.class.getName());
+    private static final int MAX_ENTRIES = 200_000;
+    private static final Map<Path, Entry> CACHE = new ConcurrentHashMap<>();
+    private static final ForkJoinPool POOL = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()), pool -> {
+        return AccessController.doPrivileged((PrivilegedAction<ForkJoinWorkerThread>) () -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("directory-size-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }, null, false);
+
+    private DirectorySizes() {
+    }
+
+    /**
+     * @param refresh whether to ignore the cache and read the whole tree
+     */
+    public static CompletableFuture<Long> size(Path dir, boolean refresh) {
+        return CompletableFuture.supplyAsync(() -> new SizeTask(dir, refresh).invoke(), POOL);
+    }
+
+    /**
+     * Invalidates the listing of the directory and the totals of the
+     * directory and its ancestors, e.g. when an entry of the directory was
+     * created, deleted or modified.
+     */
+    public static void invalidate(Path dir) {
+        CACHE.remove(dir);
+
+        // Always a new entry, so that a total being computed is not cached.
+        for (Path p = dir.getParent(); p != null; p = p.getParent()) {
+            CACHE.computeIfPresent(p, (k, e) -> new Entry(e.modified, e.files, e.directories, -1));
+        }
+    }
+
+    private static long computeSize(Path dir, boolean refresh) {
+        long modified;
+
+        try {
+            modified = Files.getLastModifiedTime(dir, LinkOption.NOFOLLOW_LINKS).toMillis();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+            CACHE.remove(dir);
+            return 0;
+        }
+
+        Entry entry = refresh ? null : CACHE.get(dir);
+
+        if (entry != null && entry.modified != modified) {
+            entry = null;
+        }
+
+        if (entry != null && entry.total >= 0) {
+            return entry.total;
+        }
+
+        if (entry == null) {
+            if (CACHE.size() > MAX_ENTRIES) {
+                CACHE.clear();
+            }
+
+            entry = list(dir, modified);
+            CACHE.put(dir, entry);
+        }
+
+        List<SizeTask> tasks = new ArrayList<>(entry.directories.length);
+
+        for (String name : entry.directories) {
+            tasks.add(new SizeTask(dir.resolve(name), refresh));
+        }
+
+        long total = entry.files;
+
+        for (SizeTask task : ForkJoinTask.invokeAll(tasks)) {
+            total += task.join();
+        }
+
+        // Replaced only if the directory was not invalidated meanwhile.
+        CACHE.replace(dir, entry, new Entry(modified, entry.files, entry.directories, total));
+
+        return total;
+    }
+
+    private static Entry list(Path dir, long modified) {
+        long files = 0;
+        List<String> directories = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                try {
+                    var attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+
+                    if (attributes.isDirectory()) {
+                        directories.add(path.getFileName().toString());
+                    } else {
+                        files += attributes.size();
+                    }
+                } catch (IOException e) {
+                    // Deleted meanwhile.
+                    LOGGER.log(Level.FINE, e.getMessage(), e);
+                }
+            }
+        } catch (IOException e) {
+            // E.g. not readable, counted as empty.
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+        }
+
+        return new Entry(modified, files, directories.toArray(new String[directories.size()]), -1);
+    }
+
+    private static class SizeTask extends RecursiveTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+        private final boolean refresh;
+
+        SizeTask(Path dir, boolean refresh) {
+            this.dir = dir;
+            this.refresh = refresh;
+        }
+
+        @Override
+        protected Long compute() {
+            return computeSize(dir, refresh);
+        }
+    }
+
+    private static class Entry {
+
+        private final long modified;
+        // Size of the files directly in the directory.
+        private final long files;
+        private final String[] directories;
+        // Total size of the tree or -1 if not known.
+        private final long total;
+
+        Entry(long modified, long files, String[] directories, long total) {
+            this.modified = modified;
+            this.files = files;
+            this.directories = directories;
+            this.total = total;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package dev.jfxde.j.nio.file;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Observes and controls a file operation. The operation calls
+ * {@link #checkpoint()} before each file and between chunks of large files,
+ * which can block to pause the operation or throw to cancel it. Methods can
+ * be called from several threads.
+ */
+public interface FileProgress {
+
+    FileProgress NONE = new FileProgress() {
+    };
+
+    default void checkpoint() throws IOException {
+    }
+
+    default void transferred(long bytes) {
+    }
+
+    default void processed(Path path) {
+    }
+}
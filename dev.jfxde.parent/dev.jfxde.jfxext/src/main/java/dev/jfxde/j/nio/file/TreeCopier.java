@@ -0,0 +1,185 @@
+package dev.jfxde.j.nio.file;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies a directory tree or a file. Files are copied in parallel by a
+ * bounded pool of workers, large files by channel transfer in chunks. Times and POSIX permissions of
+ * files and directories are preserved and links are copied as links.
+ */
+final class TreeCopier {
+
+    private static final int WORKER_COUNT = 4;
+    private static final long TRANSFER_SIZE = 1 << 20;
+    private static final long CHUNK_SIZE = 1 << 23;
+    private static final AtomicInteger WORKER_NUMBER = new AtomicInteger();
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(WORKER_COUNT, r -> {
+        Thread thread = new Thread(r, "copy-" + WORKER_NUMBER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path source;
+    private final Path target;
+    private final FileProgress progress;
+    private final List<Path> dirs = new ArrayList<>();
+    private final Map<Path, Long> sizes = new HashMap<>();
+    private final List<Future<Void>> copies = new ArrayList<>();
+
+    TreeCopier(Path source, Path target, FileProgress progress) {
+        this.source = source;
+        this.target = target;
+        this.progress = progress;
+    }
+
+    void copy() throws IOException {
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectory(resolve(dir));
+                    dirs.add(dir);
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    progress.checkpoint();
+
+                    if (attrs.isRegularFile()) {
+                        sizes.put(file, attrs.size());
+                    }
+
+                    copies.add(WORKERS.submit(() -> AccessController.doPrivileged((PrivilegedExceptionAction<Void>) () -> {
+                        copyFile(file, attrs);
+                        return null;
+                    })));
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } finally {
+            awaitCopies();
+        }
+
+        // Directory times are set when their content is complete.
+        for (int i = dirs.size() - 1; i >= 0; i--) {
+            copyAttributes(dirs.get(i), resolve(dirs.get(i)));
+        }
+    }
+
+    /**
+     * Checks that all directories and regular files were copied whole.
+     */
+    void verify() throws IOException {
+        for (Path dir : dirs) {
+            if (!Files.isDirectory(resolve(dir), LinkOption.NOFOLLOW_LINKS)) {
+                throw new IOException("Directory not copied: " + dir);
+            }
+        }
+
+        for (var entry : sizes.entrySet()) {
+            Path copy = resolve(entry.getKey());
+
+            if (!Files.isRegularFile(copy, LinkOption.NOFOLLOW_LINKS) || Files.size(copy) != entry.getValue()) {
+                throw new IOException("File not copied: " + entry.getKey());
+            }
+        }
+    }
+
+    private Path resolve(Path path) {
+        return target.resolve(source.relativize(path).toString());
+    }
+
+    private void copyFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Path copy = resolve(file);
+        progress.checkpoint();
+
+        if (attrs.isRegularFile() && attrs.size() >= TRANSFER_SIZE) {
+            try (var in = FileChannel.open(file, StandardOpenOption.READ);
+                    var out = FileChannel.open(copy, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                long size = in.size();
+                long position = 0;
+
+                while (position < size) {
+                    long transferred = in.transferTo(position, Math.min(CHUNK_SIZE, size - position), out);
+                    position += transferred;
+                    progress.transferred(transferred);
+                    progress.checkpoint();
+                }
+            }
+
+            copyAttributes(file, copy);
+        } else {
+            Files.copy(file, copy, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+            progress.transferred(attrs.size());
+        }
+
+        progress.processed(file);
+    }
+
+    private static void copyAttributes(Path from, Path to) throws IOException {
+        var posix = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+
+        if (posix != null && Files.getFileAttributeView(from, PosixFileAttributeView.class) != null) {
+            posix.setPermissions(Files.readAttributes(from, PosixFileAttributes.class).permissions());
+        }
+
+        var attrs = Files.readAttributes(from, BasicFileAttributes.class);
+        Files.getFileAttributeView(to, BasicFileAttributeView.class)
+                .setTimes(attrs.lastModifiedTime(), attrs.lastAccessTime(), attrs.creationTime());
+    }
+
+    private void awaitCopies() throws IOException {
+        IOException exception = null;
+
+        for (var copy : copies) {
+            try {
+                copy.get();
+            } catch (InterruptedException e) {
+                copies.forEach(c -> c.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                var cause = e.getCause() instanceof PrivilegedActionException ? e.getCause().getCause() : e.getCause();
+
+                if (exception == null) {
+                    exception = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                } else {
+                    exception.addSuppressed(cause);
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
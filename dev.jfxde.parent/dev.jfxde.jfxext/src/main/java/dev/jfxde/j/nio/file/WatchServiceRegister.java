@@ -3,6 +3,7 @@ package dev.jfxde.j.nio.file;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystemException;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.nio.file.StandardWatchEventKinds;
@@ -12,18 +13,70 @@ import java.nio.file.WatchService;
 import java.nio.file.Watchable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+/**
+ * Watches directories and passes their events to the registered consumers.
+ * <p>
+ * Events of a directory are gathered for a short delay and passed at once.
+ * Events of the same entry are collapsed into their net effect, e.g. a
+ * created and deleted entry is not reported. If events were lost, only an
+ * {@link StandardWatchEventKinds#OVERFLOW} event is passed and the consumers
+ * should rescan the directory.
+ * <p>
+ * The number of watched directories is limited. When the limit is reached,
+ * the least recently registered directories that are not in use are
+ * unwatched and the unwatch listeners are notified, so that the directories
+ * can be checked for changes when they are used again.
+ */
 public class WatchServiceRegister {
 
+    public static final long DEFAULT_DELAY = 100;
+    public static final int DEFAULT_MAX_WATCH_KEYS = 4096;
+    private static final Logger LOGGER = Logger.getLogger(WatchServiceRegister.class.getName());
+
     private Map<Watchable, List<WeakReference<Consumer<List<WatchEvent<?>>>>>> register = Collections.synchronizedMap(new WeakHashMap<>());
-    private Map<Watchable, WatchKey> watchKeys = new WeakHashMap<>();
+    // Access ordered, the least recently used first.
+    private Map<Watchable, WatchKey> watchKeys = new LinkedHashMap<>(16, 0.75f, true);
+    private Set<Watchable> inUse = new HashSet<>();
+    private int maxWatchKeys = DEFAULT_MAX_WATCH_KEYS;
+    private List<Consumer<Path>> unwatchListeners = new CopyOnWriteArrayList<>();
     private Map<Watchable, WeakReference<Path>> sharedPaths = new WeakHashMap<>();
+    private List<BiConsumer<Path, List<WatchEvent<?>>>> listeners = new CopyOnWriteArrayList<>();
     private WatchService watchService;
     private volatile boolean started;
+    private final long delay;
+    private final Map<Watchable, Pending> pending = new HashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "watch-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public WatchServiceRegister() {
+        this(DEFAULT_DELAY);
+    }
+
+    /**
+     * @param delay milliseconds for which events of a directory are gathered
+     */
+    public WatchServiceRegister(long delay) {
+        this.delay = delay;
+    }
 
     public synchronized Path register(Path path, Consumer<List<WatchEvent<?>>> consumer) {
 
@@ -35,22 +88,119 @@ public class WatchServiceRegister {
             sharedPath = path;
         }
 
+        if (watchKeys.get(sharedPath) == null) {
+            watch(sharedPath);
+        }
+
+        if (sharedPathRef == null || sharedPathRef.get() == null || sharedPath != path) {
+            register.computeIfAbsent(sharedPath, k -> new ArrayList<>()).add(new WeakReference<>(consumer));
+        }
+
+        return sharedPath;
+    }
+
+    private void watch(Path path) {
+        List<Path> unwatched = new ArrayList<>();
+        evict(maxWatchKeys - 1, unwatched);
+
         try {
-            if (!watchKeys.containsKey(sharedPath)) {
-                WatchKey watchKey = sharedPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
-                        StandardWatchEventKinds.ENTRY_MODIFY);
-                watchKeys.put(sharedPath, watchKey);
+            while (true) {
+                try {
+                    WatchKey watchKey = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                    watchKeys.put(path, watchKey);
+                    break;
+                } catch (IOException e) {
+                    // The system limit can be lower than the maximum. It is reported as
+                    // a plain IOException, unlike e.g. a missing or inaccessible directory,
+                    // which concerns only this directory.
+                    if (!isLimitReached(e) || !evict(watchKeys.size() - 1, unwatched)) {
+                        throw e;
+                    }
+                }
             }
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, e.getMessage(), e);
+            unwatched.add(path);
+        }
+
+        unwatched.forEach(p -> unwatchListeners.forEach(l -> l.accept(p)));
+    }
 
-            if (sharedPathRef == null || sharedPathRef.get() == null || sharedPath != path) {
-                register.computeIfAbsent(sharedPath, k -> new ArrayList<>()).add(new WeakReference<>(consumer));
+    private static boolean isLimitReached(IOException e) {
+        return !(e instanceof FileSystemException);
+    }
+
+    private boolean evict(int size, List<Path> unwatched) {
+        boolean evicted = false;
+        var i = watchKeys.entrySet().iterator();
+
+        while (watchKeys.size() > size && i.hasNext()) {
+            var entry = i.next();
+
+            if (!inUse.contains(entry.getKey())) {
+                i.remove();
+                entry.getValue().cancel();
+                evicted = true;
+
+                if (entry.getKey() instanceof Path) {
+                    unwatched.add((Path) entry.getKey());
+                }
             }
+        }
 
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        return evicted;
+    }
+
+    /**
+     * Marks the directory as in use. Directories in use are not unwatched
+     * when the maximum of watched directories is reached.
+     */
+    public synchronized void setInUse(Path path, boolean value) {
+        if (value) {
+            inUse.add(path);
+            watchKeys.get(path);
+        } else {
+            inUse.remove(path);
         }
+    }
 
-        return sharedPath;
+    public synchronized int getMaxWatchKeys() {
+        return maxWatchKeys;
+    }
+
+    public synchronized void setMaxWatchKeys(int value) {
+        maxWatchKeys = value;
+        List<Path> unwatched = new ArrayList<>();
+        evict(maxWatchKeys, unwatched);
+        unwatched.forEach(p -> unwatchListeners.forEach(l -> l.accept(p)));
+    }
+
+    /**
+     * Adds a listener notified about directories unwatched because of the
+     * maximum of watched directories.
+     *
+     * @param listener receives the unwatched directory
+     */
+    public void addUnwatchListener(Consumer<Path> listener) {
+        unwatchListeners.add(listener);
+    }
+
+    public void removeUnwatchListener(Consumer<Path> listener) {
+        unwatchListeners.remove(listener);
+    }
+
+    /**
+     * Adds a listener notified about the events of all watched directories.
+     *
+     * @param listener receives the watched directory and its events
+     */
+    public void addListener(BiConsumer<Path, List<WatchEvent<?>>> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(BiConsumer<Path, List<WatchEvent<?>>> listener) {
+        listeners.remove(listener);
     }
 
     public synchronized void unwatch(Path path) {
@@ -79,16 +229,12 @@ public class WatchServiceRegister {
                         continue;
                     }
 
-                    var events = key.pollEvents();
-                    var consumers = register.getOrDefault(key.watchable(), List.of());
-                    consumers.stream()
-                            .map(r -> r.get())
-                            .filter(c -> c != null)
-                            .forEach(c -> c.accept(events));
+                    add(key.watchable(), key.pollEvents());
 
                     boolean valid = key.reset();
                     if (!valid) {
-                        break;
+                        // The directory is deleted or unwatched, the others are still watched.
+                        removeKey(key);
                     }
                 }
             });
@@ -101,7 +247,53 @@ public class WatchServiceRegister {
         }
     }
 
+    private synchronized void removeKey(WatchKey key) {
+        watchKeys.remove(key.watchable(), key);
+    }
+
+    private void add(Watchable watchable, List<WatchEvent<?>> events) {
+        synchronized (pending) {
+            var dirPending = pending.get(watchable);
+
+            if (dirPending == null && !executor.isShutdown()) {
+                dirPending = new Pending();
+                pending.put(watchable, dirPending);
+                executor.schedule(() -> dispatch(watchable), delay, TimeUnit.MILLISECONDS);
+            }
+
+            if (dirPending != null) {
+                dirPending.add(events);
+            }
+        }
+    }
+
+    private void dispatch(Watchable watchable) {
+        Pending dirPending;
+
+        synchronized (pending) {
+            dirPending = pending.remove(watchable);
+        }
+
+        var events = dirPending.getEvents();
+
+        if (events.isEmpty()) {
+            return;
+        }
+
+        var consumers = register.getOrDefault(watchable, List.of());
+        consumers.stream()
+                .map(r -> r.get())
+                .filter(c -> c != null)
+                .forEach(c -> c.accept(events));
+
+        if (watchable instanceof Path) {
+            listeners.forEach(l -> l.accept((Path) watchable, events));
+        }
+    }
+
     public void stop() {
+        executor.shutdownNow();
+
         try {
             started = false;
             if (watchService != null) {
@@ -111,4 +303,97 @@ public class WatchServiceRegister {
             throw new RuntimeException(e);
         }
     }
+
+    private static class Pending {
+
+        private final Map<Object, Entry> entries = new LinkedHashMap<>();
+        private boolean overflow;
+
+        void add(List<WatchEvent<?>> events) {
+            for (var event : events) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                    entries.clear();
+                } else if (!overflow) {
+                    entries.computeIfAbsent(event.context(), k -> new Entry(event.kind())).add(event.kind());
+                }
+            }
+        }
+
+        List<WatchEvent<?>> getEvents() {
+            List<WatchEvent<?>> events = new ArrayList<>();
+
+            if (overflow) {
+                events.add(new Event<>(StandardWatchEventKinds.OVERFLOW, null));
+            } else {
+                entries.forEach((context, entry) -> entry.addEvents(context, events));
+            }
+
+            return events;
+        }
+    }
+
+    private static class Entry {
+
+        private final boolean existed;
+        private boolean exists;
+        private boolean deleted;
+
+        Entry(WatchEvent.Kind<?> firstKind) {
+            existed = firstKind != StandardWatchEventKinds.ENTRY_CREATE;
+        }
+
+        void add(WatchEvent.Kind<?> kind) {
+            exists = kind != StandardWatchEventKinds.ENTRY_DELETE;
+            deleted |= !exists;
+        }
+
+        void addEvents(Object context, List<WatchEvent<?>> events) {
+            if (existed && !exists) {
+                events.add(new Event<>(StandardWatchEventKinds.ENTRY_DELETE, context));
+            } else if (!existed && exists) {
+                events.add(new Event<>(StandardWatchEventKinds.ENTRY_CREATE, context));
+            } else if (existed && exists) {
+                if (deleted) {
+                    // Replaced
+                    events.add(new Event<>(StandardWatchEventKinds.ENTRY_DELETE, context));
+                    events.add(new Event<>(StandardWatchEventKinds.ENTRY_CREATE, context));
+                } else {
+                    events.add(new Event<>(StandardWatchEventKinds.ENTRY_MODIFY, context));
+                }
+            }
+        }
+    }
+
+    private static class Event<T> implements WatchEvent<T> {
+
+        private final WatchEvent.Kind<T> kind;
+        private final T context;
+
+        @SuppressWarnings("unchecked")
+        Event(WatchEvent.Kind<T> kind, Object context) {
+            this.kind = kind;
+            this.context = (T) context;
+        }
+
+        @Override
+        public WatchEvent.Kind<T> kind() {
+            return kind;
+        }
+
+        @Override
+        public int count() {
+            return 1;
+        }
+
+        @Override
+        public T context() {
+            return context;
+        }
+
+        @Override
+        public String toString() {
+            return kind + ": " + context;
+        }
+    }
 }
@@ -1,15 +1,24 @@
 package dev.jfxde.j.nio.file;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Stream;
 
 import dev.jfxde.j.util.LU;
 
 public final class XFiles {
 
+    private static final Logger LOGGER = Logger.getLogger(XFiles.class.getName());
+
     private XFiles() {
     }
 
@@ -57,60 +66,183 @@ public final class XFiles {
     }
 
     public static Path move(Path source, Path targetDir) {
-        Path target = getUniquePath(targetDir, source.getFileName().toString());
+        return move(source, targetDir, ConflictPolicy.RENAME, FileProgress.NONE);
+    }
+
+    /**
+     * Moves the source into the target directory. Within a file store the
+     * source is renamed, otherwise it is copied, verified and deleted. The
+     * target is created or replaced only when the new one is complete.
+     *
+     * @return the target or null if the source was skipped
+     */
+    public static Path move(Path source, Path targetDir, ConflictPolicy policy, FileProgress progress) {
         try {
-            if (Files.isDirectory(source)) {
-                moveDirectory(source, target);
-            } else {
-                target = Files.move(source, target);
+            Path target = getTarget(source, targetDir, policy);
+
+            if (target == null) {
+                return null;
+            }
+
+            progress.checkpoint();
+            Path part = getPartPath(target);
+
+            try {
+                Files.move(source, part, StandardCopyOption.ATOMIC_MOVE);
+                progress.processed(source);
+            } catch (AtomicMoveNotSupportedException e) {
+                return moveToFileStore(source, part, target, progress);
             }
+
+            return replace(part, target);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
-
-        return target;
     }
 
-    public static Path copy(Path source, Path targetDir) {
-        Path target = getUniquePath(targetDir, source.getFileName().toString());
+    private static Path moveToFileStore(Path source, Path part, Path target, FileProgress progress) throws IOException {
+        boolean directory = Files.isDirectory(source, LinkOption.NOFOLLOW_LINKS);
+
         try {
-            if (Files.isDirectory(source)) {
-                target = copyDirectory(source, target);
+            if (directory) {
+                var copier = new TreeCopier(source, part, progress);
+                copier.copy();
+                copier.verify();
             } else {
-                target = Files.copy(source, target);
+                long size = Files.size(source);
+                Files.copy(source, part, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+                progress.transferred(size);
+                progress.processed(source);
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        } catch (IOException | RuntimeException e) {
+            discard(part, e);
+            throw e;
+        }
+
+        replace(part, target);
+
+        // The source is deleted only when the target is complete.
+        if (directory) {
+            deleteDirectory(source, FileProgress.NONE);
+        } else {
+            Files.delete(source);
         }
 
         return target;
     }
 
-    private static Path moveDirectory(Path source, Path target) {
-        target = copyDirectory(source, target);
-        deleteDirectory(source);
-        return target;
+    public static Path copy(Path source, Path targetDir) {
+        return copy(source, targetDir, ConflictPolicy.RENAME, FileProgress.NONE);
     }
 
-    private static Path copyDirectory(Path source, Path target) {
-        try (var stream = Files.walk(source)) {
-            stream.forEach(p -> {
-                Path entryTarget = target.resolve(source.relativize(p));
+    /**
+     * Copies the source into the target directory. The target is created or
+     * replaced only when the copy is complete.
+     *
+     * @return the target or null if the source was skipped
+     */
+    public static Path copy(Path source, Path targetDir, ConflictPolicy policy, FileProgress progress) {
+        try {
+            Path target = getTarget(source, targetDir, policy);
+
+            if (target != null) {
+                Path part = getPartPath(target);
+
                 try {
-                    Files.copy(p, entryTarget);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
+                    var copier = new TreeCopier(source, part, progress);
+                    copier.copy();
+                    copier.verify();
+                } catch (IOException | RuntimeException e) {
+                    discard(part, e);
+                    throw e;
                 }
-            });
 
+                replace(part, target);
+            }
+
+            return target;
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+    }
+
+    private static Path getTarget(Path source, Path targetDir, ConflictPolicy policy) throws IOException {
+        String name = source.getFileName().toString();
+        Path target = targetDir.resolve(name);
+
+        if (Files.notExists(target, LinkOption.NOFOLLOW_LINKS)) {
+            return target;
+        }
+
+        // The source itself or a directory containing it is never overwritten.
+        if (policy == ConflictPolicy.OVERWRITE && !source.startsWith(target)) {
+            return target;
+        }
+
+        return policy == ConflictPolicy.SKIP ? null : getUniquePath(targetDir, name);
+    }
+
+    /**
+     * Returns a temporary sibling of the target to transfer into, so that an
+     * incomplete transfer never appears as the target.
+     */
+    private static Path getPartPath(Path target) {
+        return getUniquePath(target.getParent(), "." + target.getFileName() + ".part");
+    }
+
+    /**
+     * Renames the completed part to the target. Files are replaced
+     * atomically, otherwise the old target is moved aside and deleted only
+     * when the part is in place.
+     */
+    private static Path replace(Path part, Path target) throws IOException {
+        if (Files.notExists(target, LinkOption.NOFOLLOW_LINKS)) {
+            return Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        if (!Files.isDirectory(part, LinkOption.NOFOLLOW_LINKS) && !Files.isDirectory(target, LinkOption.NOFOLLOW_LINKS)) {
+            return Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        Path old = getUniquePath(target.getParent(), "." + target.getFileName() + ".old");
+        Files.move(target, old, StandardCopyOption.ATOMIC_MOVE);
+
+        try {
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.move(old, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                e.addSuppressed(ex);
+            }
+
+            throw e;
+        }
+
+        try {
+            delete(old);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.INFO, e.getMessage(), e);
+        }
 
         return target;
     }
 
+    private static void discard(Path part, Exception exception) {
+        if (Files.exists(part, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                delete(part);
+            } catch (RuntimeException e) {
+                exception.addSuppressed(e);
+            }
+        }
+    }
+
     public static Path save(Path path, String string) {
+        return save(path, string, StandardCharsets.UTF_8);
+    }
+
+    public static Path save(Path path, String string, Charset charset) {
 
         if (Files.notExists(path.getParent())) {
             Path newPath = Path.of(System.getProperty("user.home")).resolve(path.getFileName());
@@ -118,7 +250,7 @@ public final class XFiles {
         }
 
         try {
-            Files.writeString(path, string);
+            Files.writeString(path, string, charset);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -160,19 +292,33 @@ public final class XFiles {
     }
 
     public static void delete(Path path) {
+        delete(path, FileProgress.NONE);
+    }
+
+    public static void delete(Path path, FileProgress progress) {
 
-        if (Files.isDirectory(path)) {
-            deleteDirectory(path);
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            deleteDirectory(path, progress);
         } else {
-            LU.of(() -> Files.delete(path));
+            LU.of(() -> {
+                progress.checkpoint();
+                Files.delete(path);
+                progress.processed(path);
+                return null;
+            });
         }
     }
 
-    private static void deleteDirectory(Path path) {
+    private static void deleteDirectory(Path path, FileProgress progress) {
 
         try (Stream<Path> stream = Files.walk(path)) {
             stream.sorted(Comparator.reverseOrder())
-                    .forEach(p -> LU.of(() -> Files.delete(p)));
+                    .forEach(p -> LU.of(() -> {
+                        progress.checkpoint();
+                        Files.delete(p);
+                        progress.processed(p);
+                        return null;
+                    }));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,15 @@
+package dev.jfxde.j.util;
+
+/**
+ * Statistics of a cache.
+ */
+public interface CacheMXBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    int getSize();
+
+    long getEvictionCount();
+}
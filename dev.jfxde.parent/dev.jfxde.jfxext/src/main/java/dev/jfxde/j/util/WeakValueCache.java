@@ -0,0 +1,114 @@
+package dev.jfxde.j.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Thread-safe cache holding at most one value per key. Values are weakly
+ * referenced and the entries of collected values are removed on the next
+ * access of any key.
+ */
+public class WeakValueCache<K, V> implements CacheMXBean {
+
+    private final Map<K, Ref<K, V>> map = new ConcurrentHashMap<>();
+    private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public V get(K key) {
+        expunge();
+        var ref = map.get(key);
+        V value = ref != null ? ref.get() : null;
+        count(value != null);
+
+        return value;
+    }
+
+    /**
+     * Returns the value of the key or the value created by the function if
+     * there is none. The function is called at most once.
+     */
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        expunge();
+        // Keeps the value strongly reachable until it is returned.
+        Object[] value = new Object[1];
+
+        map.compute(key, (k, ref) -> {
+            value[0] = ref != null ? ref.get() : null;
+            count(value[0] != null);
+
+            if (value[0] == null) {
+                V created = function.apply(k);
+                value[0] = created;
+                ref = new Ref<>(k, created, queue);
+            }
+
+            return ref;
+        });
+
+        @SuppressWarnings("unchecked")
+        V result = (V) value[0];
+
+        return result;
+    }
+
+    public void remove(K key) {
+        expunge();
+        map.remove(key);
+    }
+
+    private void count(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expunge() {
+        Ref<K, V> ref;
+
+        while ((ref = (Ref<K, V>) queue.poll()) != null) {
+            if (map.remove(ref.key, ref)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public int getSize() {
+        expunge();
+        return map.size();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private static class Ref<K, V> extends WeakReference<V> {
+
+        private final K key;
+
+        Ref(K key, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package dev.jfxde.j.util.prefs;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.prefs.BackingStoreException;
+
+/**
+ * Parsed content of a preferences file shared by all the nodes of a tree.
+ * Changes are kept in memory and the whole file is written at once, after a
+ * delay or when flushed.
+ */
+final class PreferencesFile {
+
+    private static final long FLUSH_DELAY = 500;
+    private static final Logger LOGGER = Logger.getLogger(PreferencesFile.class.getName());
+    private static final Map<Path, PreferencesFile> FILES = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "preferences");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path defaultPrefsFile;
+    private final Path prefsFile;
+    private final NavigableMap<String, String> defaults = new TreeMap<>();
+    private final NavigableMap<String, String> properties = new TreeMap<>();
+    private FileTime loaded;
+    private boolean dirty;
+    private ScheduledFuture<?> scheduledFlush;
+
+    private PreferencesFile(Path defaultPrefsFile, Path prefsFile) {
+        this.defaultPrefsFile = defaultPrefsFile;
+        this.prefsFile = prefsFile;
+    }
+
+    static PreferencesFile get(Path defaultPrefsFile, Path prefsFile) {
+        return FILES.computeIfAbsent(prefsFile.toAbsolutePath().normalize(), k -> {
+            var file = new PreferencesFile(defaultPrefsFile, prefsFile);
+
+            try {
+                file.loadDefaults();
+                file.sync();
+            } catch (BackingStoreException e) {
+                throw new RuntimeException(e);
+            }
+
+            return file;
+        });
+    }
+
+    synchronized String get(String key) {
+        String value = properties.get(key);
+
+        return value != null ? value : defaults.get(key);
+    }
+
+    synchronized void put(String key, String value) {
+        if (!value.equals(properties.put(key, value))) {
+            changed();
+        }
+    }
+
+    synchronized void remove(String key) {
+        if (properties.remove(key) != null) {
+            changed();
+        }
+    }
+
+    synchronized void removeNode(String path) {
+        var subMap = properties.subMap(path, true, path + Character.MAX_VALUE, false);
+
+        if (!subMap.isEmpty()) {
+            subMap.clear();
+            changed();
+        }
+    }
+
+    synchronized Set<String> keys(String path) {
+        Set<String> keys = new TreeSet<>();
+        addSubKeys(defaults, path, false, keys);
+        addSubKeys(properties, path, false, keys);
+
+        return keys;
+    }
+
+    synchronized Set<String> childrenNames(String path) {
+        Set<String> names = new TreeSet<>();
+        addSubKeys(defaults, path, true, names);
+        addSubKeys(properties, path, true, names);
+
+        return names;
+    }
+
+    private static void addSubKeys(NavigableMap<String, String> map, String path, boolean children, Set<String> result) {
+        for (String key : map.subMap(path, true, path + Character.MAX_VALUE, false).keySet()) {
+            String subKey = key.substring(path.length());
+            int i = subKey.indexOf('.');
+
+            if (children && i > 0) {
+                result.add(subKey.substring(0, i));
+            } else if (!children && i == -1) {
+                result.add(subKey);
+            }
+        }
+    }
+
+    private void changed() {
+        dirty = true;
+
+        if (scheduledFlush == null) {
+            scheduledFlush = EXECUTOR.schedule(() -> {
+                AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+                    try {
+                        flush();
+                    } catch (BackingStoreException e) {
+                        LOGGER.log(Level.INFO, e.getMessage(), e);
+                    }
+                    return null;
+                });
+            }, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    synchronized void flush() throws BackingStoreException {
+        scheduledFlush = null;
+
+        if (!dirty) {
+            return;
+        }
+
+        Properties preferences = new Properties();
+        preferences.putAll(properties);
+        Path tmp = prefsFile.resolveSibling(prefsFile.getFileName() + ".tmp");
+
+        try (BufferedWriter bw = Files.newBufferedWriter(tmp)) {
+            preferences.store(bw, "");
+        } catch (IOException e) {
+            throw new BackingStoreException(e);
+        }
+
+        try {
+            Files.move(tmp, prefsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            loaded = Files.getLastModifiedTime(prefsFile);
+        } catch (IOException e) {
+            throw new BackingStoreException(e);
+        }
+
+        dirty = false;
+    }
+
+    /**
+     * Writes the pending changes and reloads the file if it was changed by
+     * someone else.
+     */
+    synchronized void sync() throws BackingStoreException {
+        flush();
+
+        try {
+            if (!Files.exists(prefsFile)) {
+                return;
+            }
+
+            FileTime modified = Files.getLastModifiedTime(prefsFile);
+
+            if (modified.equals(loaded)) {
+                return;
+            }
+
+            properties.clear();
+            load(prefsFile, properties);
+            loaded = modified;
+        } catch (IOException e) {
+            throw new BackingStoreException(e);
+        }
+    }
+
+    private void loadDefaults() throws BackingStoreException {
+        if (Files.exists(defaultPrefsFile)) {
+            load(defaultPrefsFile, defaults);
+        }
+    }
+
+    private static void load(Path file, Map<String, String> map) throws BackingStoreException {
+        Properties preferences = new Properties();
+
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            preferences.load(reader);
+        } catch (IOException e) {
+            throw new BackingStoreException(e);
+        }
+
+        preferences.stringPropertyNames().forEach(k -> map.put(k, preferences.getProperty(k)));
+    }
+}
@@ -0,0 +1,54 @@
+package dev.jfxde.j.util.search;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Text which ends a match running past a deadline or in an interrupted
+ * thread. A regex can backtrack for hours, but it reads the text while
+ * doing so.
+ */
+final class GuardedCharSequence implements CharSequence {
+
+    private static final int CHECK_INTERVAL = 1 << 12;
+
+    private final CharSequence text;
+    private final long deadline;
+    private int reads;
+
+    GuardedCharSequence(CharSequence text, long deadline) {
+        this.text = text;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++reads == CHECK_INTERVAL) {
+            reads = 0;
+
+            if (System.nanoTime() - deadline > 0) {
+                throw new SearchTimeoutException();
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException();
+            }
+        }
+
+        return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,99 @@
+package dev.jfxde.j.util.search;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Boyer-Moore-Horspool search of a literal in chars or bytes. Case folding is
+ * limited to ASCII letters, like in patterns without UNICODE_CASE.
+ */
+final class Horspool {
+
+    private final int[] needle;
+    private final int[] shifts = new int[256];
+    private final boolean ignoreCase;
+
+    private Horspool(int[] needle, boolean ignoreCase) {
+        this.needle = needle;
+        this.ignoreCase = ignoreCase;
+
+        for (int i = 0; i < needle.length; i++) {
+            needle[i] = fold(needle[i]);
+        }
+
+        Arrays.fill(shifts, needle.length);
+
+        for (int i = 0; i < needle.length - 1; i++) {
+            shifts[needle[i] & 0xFF] = needle.length - 1 - i;
+        }
+    }
+
+    static Horspool of(String literal, boolean ignoreCase) {
+        return new Horspool(literal.chars().toArray(), ignoreCase);
+    }
+
+    static Horspool of(byte[] literal, boolean ignoreCase) {
+        int[] needle = new int[literal.length];
+
+        for (int i = 0; i < literal.length; i++) {
+            needle[i] = literal[i] & 0xFF;
+        }
+
+        return new Horspool(needle, ignoreCase);
+    }
+
+    int length() {
+        return needle.length;
+    }
+
+    int indexOf(CharSequence text, int from, int to) {
+        int last = needle.length - 1;
+
+        for (int i = from; i + last < to;) {
+            int c = fold(text.charAt(i + last));
+            int j = last;
+
+            if (c == needle[j]) {
+                while (j > 0 && fold(text.charAt(i + j - 1)) == needle[j - 1]) {
+                    j--;
+                }
+
+                if (j == 0) {
+                    return i;
+                }
+            }
+
+            // Chars sharing the low byte share the shift, which stays safe.
+            i += shifts[c & 0xFF];
+        }
+
+        return -1;
+    }
+
+    int indexOf(ByteBuffer bytes, int from, int to) {
+        int last = needle.length - 1;
+
+        for (int i = from; i + last < to;) {
+            int b = fold(bytes.get(i + last) & 0xFF);
+            int j = last;
+
+            if (b == needle[j]) {
+                while (j > 0 && fold(bytes.get(i + j - 1) & 0xFF) == needle[j - 1]) {
+                    j--;
+                }
+
+                if (j == 0) {
+                    return i;
+                }
+            }
+
+            i += shifts[b];
+        }
+
+        return -1;
+    }
+
+    private int fold(int c) {
+        return ignoreCase && c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+}
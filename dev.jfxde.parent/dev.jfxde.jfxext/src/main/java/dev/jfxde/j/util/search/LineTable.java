@@ -0,0 +1,66 @@
+package dev.jfxde.j.util.search;
+
+import java.util.Arrays;
+
+/**
+ * Start offsets of the lines of a text. Lines before the current search
+ * window can be dropped while their count is kept for line numbering.
+ */
+class LineTable {
+
+    private int[] starts = new int[1024];
+    private int size;
+    private int removed;
+
+    LineTable() {
+        add(0);
+    }
+
+    void add(int start) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+        }
+
+        starts[size++] = start;
+    }
+
+    void scan(CharSequence text, int from, int to, int offset) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+
+            if (c == '\n' || c == '\r' && (i + 1 >= text.length() || text.charAt(i + 1) != '\n')) {
+                add(offset + i + 1);
+            }
+        }
+    }
+
+    int indexOf(int offset) {
+        int i = Arrays.binarySearch(starts, 0, size, offset);
+
+        if (i < 0) {
+            i = -i - 2;
+        }
+
+        return removed + i;
+    }
+
+    int getStart(int index) {
+        return starts[index - removed];
+    }
+
+    int getEnd(int index, int defaultEnd) {
+        int i = index - removed + 1;
+
+        return i < size ? starts[i] : defaultEnd;
+    }
+
+    void removeBefore(int offset) {
+        int i = indexOf(offset) - removed;
+
+        if (i > 0) {
+            System.arraycopy(starts, i, starts, 0, size - i);
+            size -= i;
+            removed += i;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package dev.jfxde.j.util.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Literal parts of regular expressions.
+ */
+public final class PatternLiterals {
+
+    // Escapes that can match a line terminator or depend on the input bounds.
+    private static final String SPANNING_ESCAPES = "sSnrRvVHWDpPXxuUc0eNAzZG";
+
+    private PatternLiterals() {
+    }
+
+    /**
+     * Returns the literal runs every match of the pattern must contain.
+     */
+    public static List<String> getLiterals(Pattern pattern) {
+        if ((pattern.flags() & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0) {
+            return List.of();
+        }
+
+        return (pattern.flags() & Pattern.LITERAL) != 0
+                ? List.of(pattern.pattern())
+                : getLiterals(pattern.pattern());
+    }
+
+    /**
+     * Returns the string matched by the pattern if the pattern is a literal,
+     * otherwise null.
+     */
+    public static String getLiteral(Pattern pattern) {
+        if ((pattern.flags() & Pattern.LITERAL) != 0) {
+            return pattern.pattern();
+        }
+
+        if ((pattern.flags() & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0) {
+            return null;
+        }
+
+        String regex = pattern.pattern();
+        var literal = new StringBuilder();
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                if (i + 1 == regex.length()) {
+                    return null;
+                }
+
+                char n = regex.charAt(++i);
+
+                if (n == 'Q') {
+                    int end = regex.indexOf("\\E", i + 1);
+                    end = end < 0 ? regex.length() : end;
+                    literal.append(regex, i + 1, end);
+                    i = end + 1;
+                } else if (Character.isLetterOrDigit(n)) {
+                    return null;
+                } else {
+                    literal.append(n);
+                }
+            } else if ("[](){}.*+?^$|".indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+            }
+        }
+
+        return literal.toString();
+    }
+
+    /**
+     * Checks conservatively whether a match of the pattern can contain a line
+     * terminator or depend on the text outside its line.
+     */
+    public static boolean canSpanLines(Pattern pattern) {
+        if ((pattern.flags() & (Pattern.DOTALL | Pattern.COMMENTS | Pattern.CANON_EQ)) != 0) {
+            return true;
+        }
+
+        String regex = pattern.pattern();
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (c < ' ' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            } else if (c == '[' && i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                return true;
+            } else if (c == '\\' && i + 1 < regex.length()) {
+                char n = regex.charAt(++i);
+
+                // An escaped character can start a range, e.g. [\t-z].
+                if (SPANNING_ESCAPES.indexOf(n) >= 0 || i + 1 < regex.length() && regex.charAt(i + 1) == '-') {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Extracts the literal runs every match of the regex must contain. The
+     * extraction is conservative, alternations and inline flags disable it
+     * and groups, classes and optional characters end the current run.
+     */
+    private static List<String> getLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+
+        if (regex.contains("(?")) {
+            return literals;
+        }
+
+        var run = new StringBuilder();
+        int depth = 0;
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (c == '\\' && i + 1 < regex.length()) {
+                char n = regex.charAt(++i);
+
+                if (n == 'Q') {
+                    int end = regex.indexOf("\\E", i + 1);
+                    end = end < 0 ? regex.length() : end;
+                    if (depth == 0) {
+                        run.append(regex, i + 1, end);
+                    }
+                    i = end + 1;
+                } else if (Character.isLetterOrDigit(n)) {
+                    addRun(literals, run);
+                    i = skipEscapeArguments(regex, i);
+                } else if (depth == 0) {
+                    run.append(n);
+                }
+            } else if (c == '|') {
+                return new ArrayList<>();
+            } else if (c == '[') {
+                addRun(literals, run);
+                i = skipClass(regex, i);
+            } else if (c == '(') {
+                addRun(literals, run);
+                depth++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+            } else if (c == '*' || c == '?' || c == '{') {
+                if (run.length() > 0) {
+                    run.setLength(run.length() - 1);
+                }
+                addRun(literals, run);
+                if (c == '{') {
+                    int end = regex.indexOf('}', i);
+                    i = end < 0 ? regex.length() : end;
+                }
+            } else if (c == '+' || c == '.' || c == '^' || c == '$') {
+                addRun(literals, run);
+            } else if (depth == 0) {
+                run.append(c);
+            }
+        }
+
+        addRun(literals, run);
+
+        return literals;
+    }
+
+    private static void addRun(List<String> literals, StringBuilder run) {
+        if (run.length() > 0) {
+            literals.add(run.toString());
+            run.setLength(0);
+        }
+    }
+
+    /**
+     * Returns the index of the last character of the escape whose letter is
+     * at the index, e.g. of the digits of \x41, so that they are not taken
+     * as literals.
+     */
+    private static int skipEscapeArguments(String regex, int index) {
+        char n = regex.charAt(index);
+        int i = index + 1;
+
+        switch (n) {
+        case 'x':
+            return i < regex.length() && regex.charAt(i) == '{' ? skipTo(regex, i, '}') : skip(regex, i, 2, "0123456789abcdefABCDEF");
+        case 'u':
+            return skip(regex, i, 4, "0123456789abcdefABCDEF");
+        case '0':
+            return skip(regex, i, 3, "01234567");
+        case 'c':
+            return Math.min(i, regex.length() - 1);
+        case 'k':
+            return i < regex.length() && regex.charAt(i) == '<' ? skipTo(regex, i, '>') : index;
+        case 'p':
+        case 'P':
+        case 'N':
+            return i < regex.length() && regex.charAt(i) == '{' ? skipTo(regex, i, '}') : Math.min(i, regex.length() - 1);
+        default:
+            // A back reference can have several digits.
+            return Character.isDigit(n) ? skip(regex, i, regex.length(), "0123456789") : index;
+        }
+    }
+
+    private static int skip(String regex, int start, int max, String chars) {
+        int i = start;
+
+        while (i < regex.length() && i - start < max && chars.indexOf(regex.charAt(i)) >= 0) {
+            i++;
+        }
+
+        return i - 1;
+    }
+
+    private static int skipTo(String regex, int start, char end) {
+        int i = regex.indexOf(end, start);
+
+        return i < 0 ? regex.length() - 1 : i;
+    }
+
+    private static int skipClass(String regex, int start) {
+        // A bracket right after the opening one is a literal.
+        int first = start + 1 < regex.length() && regex.charAt(start + 1) == '^' ? start + 2 : start + 1;
+        int depth = 0;
+
+        for (int i = start; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && i > first && --depth == 0) {
+                return i;
+            }
+        }
+
+        return regex.length();
+    }
+}
@@ -0,0 +1,13 @@
+package dev.jfxde.j.util.search;
+
+/**
+ * Thrown when a search exceeds its time budget.
+ */
+public class SearchTimeoutException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SearchTimeoutException() {
+        super("The search timed out.");
+    }
+}
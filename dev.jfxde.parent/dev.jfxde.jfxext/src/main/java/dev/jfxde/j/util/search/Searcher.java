@@ -1,17 +1,53 @@
 package dev.jfxde.j.util.search;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Comparator;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+/**
+ * Searches text for a pattern.
+ * <p>
+ * The text is matched once as a whole, so patterns can span lines. Line
+ * numbers and columns of the matches are resolved by binary search in a table
+ * of line start offsets. Files are decoded from memory-mapped buffers into a
+ * sliding window, which keeps the tail of the previous window so that matches
+ * crossing the window boundary are found.
+ * <p>
+ * Literal patterns are found by Boyer-Moore-Horspool search. Patterns which
+ * cannot match across lines and contain a literal are matched only on the
+ * lines containing the literal. UTF-8 files are searched for the literal in
+ * their raw bytes and only the lines with a hit are decoded.
+ * <p>
+ * {@code ^} and {@code $} match at line boundaries.
+ * <p>
+ * With a timeout, regex matching throws {@link SearchTimeoutException} when
+ * the timeout elapses, and a {@link java.util.concurrent.CancellationException}
+ * when the thread is interrupted, so a pathological pattern cannot hang the
+ * search.
+ */
 public final class Searcher {
 
-    private Line currectLine;
-    private int searchWindowStart;
-    private String searchWindow;
+    private static final int WINDOW_SIZE = 1 << 20;
+    private static final int OVERLAP = 1 << 16;
+    private static final long MAP_SIZE = 1 << 24;
+
+    private LineTable lines;
+    private boolean guarded;
+    private long deadline;
 
     private Searcher() {
     }
@@ -21,61 +57,364 @@ public final class Searcher {
         return new Searcher();
     }
 
+    /**
+     * Limits the time of the following searches, counted from now.
+     */
+    public Searcher timeout(Duration timeout) {
+        guarded = true;
+        deadline = System.nanoTime() + timeout.toNanos();
+
+        return this;
+    }
+
     public void search(Stream<String> lines, Pattern pattern, Predicate<SearchResult> process) {
         search(lines, 0, Integer.MAX_VALUE, pattern, process);
     }
 
     public void search(Stream<String> lines, int from, int to, Pattern pattern, Predicate<SearchResult> process) {
+        String text = lines.collect(Collectors.joining("\n", "", "\n"));
+        search(text, from, Math.min(to, text.length()), pattern, process);
+    }
+
+    public void search(CharSequence text, Pattern pattern, Predicate<SearchResult> process) {
+        search(text, 0, text.length(), pattern, process);
+    }
 
-        currectLine = new Line("", -1, 0);
-        searchWindowStart = from;
-        searchWindow = "";
+    public void search(CharSequence text, int from, int to, Pattern pattern, Predicate<SearchResult> process) {
 
-        List<Line> searchLines = new ArrayList<>();
+        if (from > to) {
+            return;
+        }
 
-        lines.allMatch(line -> {
-            boolean continueSearch = true;
+        lines = new LineTable();
+        lines.scan(text, 0, to, 0);
 
-            currectLine = currectLine.createNext(line);
+        Matcher matcher = withLineAnchors(pattern).matcher(guard(text));
+        boolean continueSearch = true;
+        String literal = getLiteral(pattern);
 
-            if (currectLine.contains(from)) {
-                searchWindow += currectLine.getUpper(from);
-            } else if (currectLine.contains(to)) {
-                searchWindow += currectLine.getLower(to);
-                continueSearch = false;
-            } else if (currectLine.getEnd() < from) {
-                return true;
-            } else {
-                searchWindow += currectLine.getValue();
+        if (literal != null) {
+            var horspool = Horspool.of(literal, isAsciiCaseInsensitive(pattern));
+            int i = from;
+
+            while (continueSearch && (i = horspool.indexOf(text, i, to)) >= 0) {
+                String value = text.subSequence(i, i + horspool.length()).toString();
+                continueSearch = process.test(createResult(i, value, text, 0, to));
+                i += horspool.length();
+            }
+
+            return;
+        }
+
+        String required = getRequiredLiteral(pattern);
+
+        if (required != null) {
+            var horspool = Horspool.of(required, isAsciiCaseInsensitive(pattern));
+            int i = from;
+
+            while (continueSearch && (i = horspool.indexOf(text, i, to)) >= 0) {
+                int lineIndex = lines.indexOf(i);
+                int lineEnd = Math.min(lines.getEnd(lineIndex, to), to);
+                matcher.region(Math.max(lines.getStart(lineIndex), from), lineEnd);
+
+                while (continueSearch && matcher.find()) {
+                    continueSearch = process.test(createResult(matcher, text, 0, to));
+                }
+
+                i = lineEnd;
             }
 
-            searchLines.add(currectLine);
+            return;
+        }
+
+        matcher.region(from, to);
+
+        while (continueSearch && matcher.find()) {
+            continueSearch = process.test(createResult(matcher, text, 0, to));
+        }
+    }
+
+    public void search(Path path, Pattern pattern, Predicate<SearchResult> process) throws IOException {
+        search(path, StandardCharsets.UTF_8, pattern, process);
+    }
+
+    public void search(Path path, Charset charset, Pattern pattern, Predicate<SearchResult> process) throws IOException {
+
+        if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)) {
+            String literal = getLiteral(pattern);
 
-            Line matchLine = null;
-            Matcher matcher = pattern.matcher(searchWindow);
-            int matchEnd = 0;
+            if (literal != null && searchBytes(path, literal, isAsciiCaseInsensitive(pattern), null, process)) {
+                return;
+            }
+
+            String required = getRequiredLiteral(pattern);
 
-            while (matcher.find() && continueSearch) {
-                int group = matcher.groupCount() == 1 ? 1 : 0;
-                int absMatchStart = searchWindowStart + matcher.start(group);
-                matchLine = searchLines.stream().filter(ln -> ln.contains(absMatchStart)).findFirst().orElse(null);
-                SearchResult stringRef = new SearchResult(matchLine, absMatchStart - matchLine.getStart(), matcher.group(group));
-                matchEnd = matcher.end(group);
-                continueSearch = process.test(stringRef);
+            if (required != null && searchBytes(path, required, isAsciiCaseInsensitive(pattern), withLineAnchors(pattern), process)) {
+                return;
             }
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            CharsetDecoder decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+            lines = new LineTable();
+            pattern = withLineAnchors(pattern);
+            CharBuffer window = CharBuffer.allocate((int) Math.min(WINDOW_SIZE, size + 1));
+            MappedByteBuffer bytes = null;
+            long mappedStart = 0;
+            int windowStart = 0;
+            int scanned = 0;
+            int searchFrom = 0;
+            boolean eof = false;
+
+            while (true) {
+
+                while (window.hasRemaining() && !eof) {
+                    if (bytes == null || bytes.remaining() < 16 && mappedStart + bytes.limit() < size) {
+                        mappedStart = bytes == null ? 0 : mappedStart + bytes.position();
+                        bytes = channel.map(FileChannel.MapMode.READ_ONLY, mappedStart, Math.min(MAP_SIZE, size - mappedStart));
+                    }
+
+                    boolean endOfInput = mappedStart + bytes.limit() == size;
+                    var result = decoder.decode(bytes, window, endOfInput);
+
+                    if (result.isError()) {
+                        result.throwException();
+                    }
+
+                    if (endOfInput && !bytes.hasRemaining()) {
+                        eof = !decoder.flush(window).isOverflow();
+                    } else if (result.isOverflow()) {
+                        break;
+                    }
+                }
+
+                window.flip();
+
+                int windowEnd = windowStart + window.limit();
+                // A trailing CR is scanned with the next window to recognize CRLF.
+                int scanTo = !eof && window.limit() > 0 && window.get(window.limit() - 1) == '\r' ? windowEnd - 1 : windowEnd;
+                lines.scan(window, scanned - windowStart, scanTo - windowStart, windowStart);
+                scanned = scanTo;
+
+                Matcher matcher = pattern.matcher(guard(window));
+                matcher.useTransparentBounds(true);
+                matcher.useAnchoringBounds(false);
+                matcher.region(searchFrom - windowStart, window.limit());
 
-            if (matchLine != null) {
-                int matchLineNumber = matchLine.getIndex();
-                searchLines.removeIf(ln -> ln.getIndex() < matchLineNumber);
+                boolean continueSearch = true;
+                int carry = -1;
+
+                while (continueSearch && matcher.find()) {
+
+                    // The match could extend into the next window.
+                    if (!eof && matcher.hitEnd()) {
+                        carry = windowStart + matcher.start();
+                        break;
+                    }
+
+                    continueSearch = process.test(createResult(matcher, window, windowStart, windowEnd));
+                    searchFrom = windowStart + (matcher.end() > matcher.start() ? matcher.end() : matcher.end() + 1);
+                }
+
+                if (!continueSearch || eof) {
+                    break;
+                }
+
+                if (carry < 0) {
+                    carry = Math.max(searchFrom, windowEnd - OVERLAP);
+                }
+
+                carry = Math.min(getLineStart(carry, windowStart), scanned);
+                searchFrom = Math.max(searchFrom, carry);
+
+                window.position(carry - windowStart);
+                window.compact();
+                windowStart = carry;
+                lines.removeBefore(windowStart);
+
+                if (!window.hasRemaining()) {
+                    var larger = CharBuffer.allocate(window.capacity() * 2);
+                    window.flip();
+                    larger.put(window);
+                    window = larger;
+                }
             }
+        }
+    }
 
-            if (matchEnd > 0) {
-                searchWindow = searchWindow.substring(matchEnd);
-                searchWindowStart += matchEnd;
+    /**
+     * Searches the bytes of a UTF-8 file for the literal. The lines with a hit
+     * are decoded and, if the pattern is given, matched by it.
+     *
+     * @return false if the file is too large to be mapped at once
+     */
+    private boolean searchBytes(Path path, String literal, boolean ignoreCase, Pattern pattern, Predicate<SearchResult> process) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) {
+                return false;
             }
 
-            return continueSearch;
+            if (size == 0) {
+                return true;
+            }
+
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT);
+            var horspool = Horspool.of(literal.getBytes(StandardCharsets.UTF_8), ignoreCase);
+            var cursor = new ByteCursor(bytes);
+            boolean continueSearch = true;
+            int i = 0;
+
+            while (continueSearch && (i = horspool.indexOf(bytes, i, (int) size)) >= 0) {
+                cursor.moveTo(i);
+                int lineEnd = cursor.getLineEnd(i);
+                String value = decode(decoder, bytes, cursor.lineStart, lineEnd);
+                Line line = new Line(value + "\n", cursor.lineIndex, cursor.lineStartChar);
+
+                if (pattern == null) {
+                    int column = decode(decoder, bytes, cursor.lineStart, i).length();
+                    String matched = decode(decoder, bytes, i, i + horspool.length());
+                    continueSearch = process.test(new SearchResult(line, column, matched));
+                    i += horspool.length();
+                } else {
+                    Matcher matcher = pattern.matcher(guard(value));
+
+                    while (continueSearch && matcher.find()) {
+                        int group = matcher.groupCount() == 1 && matcher.start(1) >= 0 ? 1 : 0;
+                        continueSearch = process.test(new SearchResult(line, matcher.start(group), matcher.group(group)));
+                    }
+
+                    i = lineEnd;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private CharSequence guard(CharSequence text) {
+        return guarded ? new GuardedCharSequence(text, deadline) : text;
+    }
+
+    private static String decode(CharsetDecoder decoder, MappedByteBuffer bytes, int from, int to) throws IOException {
+        return decoder.reset().decode(bytes.duplicate().position(from).limit(to)).toString();
+    }
+
+    /**
+     * Returns the literal matched by the pattern if it can be searched without
+     * the regex engine, otherwise null.
+     */
+    private static String getLiteral(Pattern pattern) {
+        String literal = PatternLiterals.getLiteral(pattern);
+
+        return literal != null && !literal.isEmpty() && isCaseSupported(pattern) ? literal : null;
+    }
+
+    /**
+     * Returns the longest literal every match of the pattern contains if the
+     * pattern can be matched line by line, otherwise null.
+     */
+    private static String getRequiredLiteral(Pattern pattern) {
+        if (!isCaseSupported(pattern) || PatternLiterals.canSpanLines(pattern)) {
+            return null;
+        }
+
+        return PatternLiterals.getLiterals(pattern).stream()
+                .max(Comparator.comparingInt(String::length))
+                .orElse(null);
+    }
+
+    private static boolean isCaseSupported(Pattern pattern) {
+        return (pattern.flags() & Pattern.UNICODE_CASE) == 0 || !isAsciiCaseInsensitive(pattern);
+    }
+
+    private static boolean isAsciiCaseInsensitive(Pattern pattern) {
+        return (pattern.flags() & Pattern.CASE_INSENSITIVE) != 0;
+    }
+
+    private static Pattern withLineAnchors(Pattern pattern) {
+        return (pattern.flags() & Pattern.MULTILINE) != 0 ? pattern : Pattern.compile(pattern.pattern(), pattern.flags() | Pattern.MULTILINE);
+    }
+
+    private int getLineStart(int offset, int windowStart) {
+        int lineStart = lines.getStart(lines.indexOf(offset));
+
+        return lineStart >= windowStart && offset - lineStart <= OVERLAP ? lineStart : offset;
+    }
+
+    private SearchResult createResult(Matcher matcher, CharSequence text, int textStart, int textEnd) {
+        int group = matcher.groupCount() == 1 && matcher.start(1) >= 0 ? 1 : 0;
+
+        return createResult(textStart + matcher.start(group), matcher.group(group), text, textStart, textEnd);
+    }
+
+    private SearchResult createResult(int matchStart, String matched, CharSequence text, int textStart, int textEnd) {
+        int lineIndex = lines.indexOf(matchStart);
+        int lineStart = lines.getStart(lineIndex);
+        int lineEnd = Math.min(lines.getEnd(lineIndex, textEnd), textEnd);
+        int valueStart = Math.max(lineStart, textStart);
+
+        while (lineEnd > valueStart && (text.charAt(lineEnd - 1 - textStart) == '\n' || text.charAt(lineEnd - 1 - textStart) == '\r')) {
+            lineEnd--;
+        }
+
+        String value = text.subSequence(valueStart - textStart, lineEnd - textStart) + "\n";
+        Line line = new Line(value, lineIndex, lineStart);
+
+        return new SearchResult(line, matchStart - lineStart, matched);
+    }
+
+    /**
+     * Counts lines and chars of UTF-8 bytes up to a position. A char is
+     * counted for every byte which does not continue a sequence and one more
+     * for four byte sequences, which decode to surrogate pairs.
+     */
+    private static class ByteCursor {
+
+        private final MappedByteBuffer bytes;
+        private int position;
+        private int chars;
+        private int lineStart;
+        private int lineStartChar;
+        private int lineIndex;
+
+        ByteCursor(MappedByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        void moveTo(int to) {
+            for (; position < to; position++) {
+                int b = bytes.get(position) & 0xFF;
+
+                if ((b & 0xC0) != 0x80) {
+                    chars += b >= 0xF0 ? 2 : 1;
+                }
+
+                if (b == '\n' || b == '\r' && (position + 1 >= bytes.limit() || bytes.get(position + 1) != '\n')) {
+                    lineStart = position + 1;
+                    lineStartChar = chars;
+                    lineIndex++;
+                }
+            }
+        }
+
+        int getLineEnd(int from) {
+            int i = from;
+
+            while (i < bytes.limit() && bytes.get(i) != '\n' && bytes.get(i) != '\r') {
+                i++;
+            }
 
-        });
+            return i;
+        }
     }
 }
@@ -1,16 +1,52 @@
 package dev.jfxde.jfx.embed.swing;
 
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.swing.ImageIcon;
 import javax.swing.filechooser.FileSystemView;
 
+import dev.jfxde.j.nio.file.ContentDetector;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
 
 public final class FXUtils {
 
+    private static final Logger LOGGER = Logger.getLogger(FXUtils.class.getName());
+    private static final int MAX_ICONS = 512;
+    private static final String DIRECTORY_KEY = "*/";
+    // Keys of files without an extension by their content.
+    private static final String TEXT_KEY = "*text";
+    private static final String BINARY_KEY = "*binary";
+    // Extensions of files which can have their own icon.
+    private static final Set<String> OWN_ICON_EXTENSIONS = Set.of("ani", "cur", "exe", "ico", "lnk", "scr", "url");
+    private static final Map<String, CompletableFuture<Image>> ICONS = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Image>> eldest) {
+            return size() > MAX_ICONS;
+        }
+    };
+    private static final ExecutorService ICON_LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "icon-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private FXUtils() {
 
     }
@@ -22,9 +58,98 @@ public final class FXUtils {
        }
 
         ImageIcon icon = (ImageIcon) FileSystemView.getFileSystemView().getSystemIcon(path.toFile());
-        BufferedImage image = (BufferedImage) icon.getImage();
+
+        if (icon == null) {
+            return null;
+        }
+
+        BufferedImage image;
+
+        if (icon.getImage() instanceof BufferedImage) {
+            image = (BufferedImage) icon.getImage();
+        } else {
+            // E.g. a toolkit image on Linux.
+            image = new BufferedImage(icon.getIconWidth(), icon.getIconHeight(), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = image.createGraphics();
+            icon.paintIcon(null, graphics, 0, 0);
+            graphics.dispose();
+        }
+
         Image fximage = SwingFXUtils.toFXImage(image, null);
 
         return fximage;
     }
+
+    /**
+     * Returns the icon of the path loaded on a background thread. Files of the
+     * same type share one image, so the future is usually already completed.
+     * The type of a file without an extension is detected from its content.
+     */
+    public static CompletableFuture<Image> getIconAsync(Path path, boolean directory) {
+
+        if (path == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        String key = getKey(path, directory);
+
+        if (key.equals(".")) {
+            return CompletableFuture.supplyAsync(() -> AccessController.doPrivileged((PrivilegedAction<String>) () -> getContentKey(path)), ICON_LOADER)
+                    .thenCompose(k -> getIconAsync(path, k));
+        }
+
+        return getIconAsync(path, key);
+    }
+
+    private static CompletableFuture<Image> getIconAsync(Path path, String key) {
+        CompletableFuture<Image> icon;
+
+        synchronized (ICONS) {
+            icon = ICONS.get(key);
+
+            if (icon == null) {
+                icon = CompletableFuture.supplyAsync(() -> AccessController.doPrivileged((PrivilegedAction<Image>) () -> getIcon(path)), ICON_LOADER);
+                ICONS.put(key, icon);
+                CompletableFuture<Image> loading = icon;
+                icon.whenComplete((i, e) -> {
+                    if (e != null) {
+                        LOGGER.log(Level.INFO, e.getMessage(), e);
+                        synchronized (ICONS) {
+                            ICONS.remove(key, loading);
+                        }
+                    }
+                });
+            }
+        }
+
+        return icon;
+    }
+
+    private static String getKey(Path path, boolean directory) {
+        Path fileName = path.getFileName();
+
+        if (fileName == null) {
+            // Roots have their own icons, e.g. drives.
+            return path.toString();
+        }
+
+        if (directory) {
+            return DIRECTORY_KEY;
+        }
+
+        String name = fileName.toString();
+        int i = name.lastIndexOf('.');
+        String extension = i > 0 ? name.substring(i + 1).toLowerCase(Locale.ROOT) : "";
+
+        return OWN_ICON_EXTENSIONS.contains(extension) ? path.toString() : "." + extension;
+    }
+
+    private static String getContentKey(Path path) {
+        try {
+            return ContentDetector.detect(path).isText() ? TEXT_KEY : BINARY_KEY;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+            return ".";
+        }
+    }
 }
@@ -6,11 +6,27 @@ import java.io.InputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.fxmisc.richtext.model.StyleSpansBuilder;
 
 import dev.jfxde.fxmisc.richtext.TextStyleSpans;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener.Change;
 import javafx.collections.ObservableList;
@@ -21,6 +37,18 @@ public class ConsoleModel {
     public static final String COMMENT_STYLE = "jd-console-comment";
     public static final String HELP_STYLE = "jd-console-help";
     public static final String ERROR_STYLE = "jd-console-error";
+    public static final int DEFAULT_OUTPUT_LIMIT = 1 << 20;
+    // Number of pending characters from which writers wait for the output to be drained.
+    private static final int MAX_BACKLOG = 1 << 18;
+    private static final long BACKLOG_WAIT = 200;
+    // Size from which the spill file is rotated to one backup.
+    private static final long MAX_SPILL_SIZE = 8L << 20;
+    private static final ExecutorService SPILL_WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "console-spill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Logger LOGGER = Logger.getLogger(ConsoleModel.class.getName());
     private ObservableList<TextStyleSpans> input = FXCollections.observableArrayList();
     private ObservableList<TextStyleSpans> inputToOutput = FXCollections.observableArrayList();
     private ObservableList<TextStyleSpans> output = FXCollections.observableArrayList();
@@ -30,6 +58,14 @@ public class ConsoleModel {
     private PrintStream out = new PrintStream(new ConsoleOutputStream(NORMAL_STYLE), true);
     private PrintStream err = new PrintStream(new ConsoleOutputStream(ERROR_STYLE), true);
     private AtomicBoolean readFromPipe= new AtomicBoolean();
+    private volatile int outputLimit = DEFAULT_OUTPUT_LIMIT;
+    private long outputLength;
+    private Path spillFile;
+    private final List<TextStyleSpans> pending = new ArrayList<>();
+    private int pendingLength;
+    private boolean drainScheduled;
+    private volatile PrintStream echoOut;
+    private volatile PrintStream echoErr;
 
     public ConsoleModel() {
 
@@ -56,7 +92,8 @@ public class ConsoleModel {
                         inputToOutput.addAll(added);
                     }
 
-                    output.addAll(added);
+                    enqueue(added);
+                    echo(echoOut, added);
                 }
             }
         });
@@ -82,6 +119,47 @@ public class ConsoleModel {
         return output;
     }
 
+    public int getOutputLimit() {
+        return outputLimit;
+    }
+
+    /**
+     * Sets the maximum number of characters kept in the output. When the
+     * limit is exceeded, the oldest output is removed down to three quarters
+     * of the limit and appended to the spill file if it is set. The spill
+     * file is written in the background and rotated to one backup when it
+     * exceeds 8 MB.
+     *
+     * @param outputLimit maximum number of characters
+     */
+    public void setOutputLimit(int outputLimit) {
+        this.outputLimit = outputLimit;
+    }
+
+    public synchronized Path getSpillFile() {
+        return spillFile;
+    }
+
+    public synchronized void setSpillFile(Path spillFile) {
+        this.spillFile = spillFile;
+    }
+
+    /**
+     * Sets the streams to which the output is also written by the writing
+     * thread, e.g. the original standard streams. Error output goes to the
+     * second one.
+     */
+    public void setEcho(PrintStream out, PrintStream err) {
+        this.echoOut = out;
+        this.echoErr = err;
+    }
+
+    private static void echo(PrintStream stream, List<? extends TextStyleSpans> textStyleSpans) {
+        if (stream != null) {
+            textStyleSpans.forEach(s -> stream.print(s.getText()));
+        }
+    }
+
     public InputStream getIn() {
         return in;
     }
@@ -104,17 +182,151 @@ public class ConsoleModel {
             return;
         }
 
-        if (!output.isEmpty() && !output.get(output.size() - 1).getText().endsWith("\n")) {
-            output.add(new TextStyleSpans("\n"));
+        List<TextStyleSpans> added = new ArrayList<>();
+
+        synchronized (pending) {
+            String lastText = !pending.isEmpty() ? pending.get(pending.size() - 1).getText()
+                    : !output.isEmpty() ? output.get(output.size() - 1).getText() : "\n";
+
+            if (!lastText.endsWith("\n")) {
+                added.add(new TextStyleSpans("\n"));
+            }
+
+            if (!textStyleSpans.getText().isBlank()) {
+                added.add(textStyleSpans);
+            }
+
+            enqueue(added);
         }
 
-        if (!textStyleSpans.getText().isBlank()) {
-            output.add(textStyleSpans);
+        echo(echoOut, added);
+    }
+
+    /**
+     * Queues output for the FX thread. All output queued until the FX thread
+     * gets to it is added as one merged batch. Writers other than the FX
+     * thread wait for a while when the queue exceeds the backlog limit.
+     */
+    private void enqueue(List<? extends TextStyleSpans> textStyleSpans) {
+
+        synchronized (pending) {
+            long deadline = System.currentTimeMillis() + BACKLOG_WAIT;
+            long wait = BACKLOG_WAIT;
+
+            while (pendingLength > MAX_BACKLOG && wait > 0 && !Platform.isFxApplicationThread()) {
+                try {
+                    pending.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+
+                wait = deadline - System.currentTimeMillis();
+            }
+
+            pending.addAll(textStyleSpans);
+            textStyleSpans.forEach(s -> pendingLength += s.getText().length());
+
+            if (!drainScheduled) {
+                drainScheduled = true;
+                Platform.runLater(this::drain);
+            }
+        }
+    }
+
+    private void drain() {
+        List<TextStyleSpans> batch;
+
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+            pendingLength = 0;
+            drainScheduled = false;
+            pending.notifyAll();
+        }
+
+        if (!batch.isEmpty()) {
+            addOutput(merge(batch));
         }
     }
 
+    private static TextStyleSpans merge(List<TextStyleSpans> batch) {
+
+        if (batch.size() == 1) {
+            return batch.get(0);
+        }
+
+        StringBuilder text = new StringBuilder();
+        StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<>();
+
+        for (TextStyleSpans textStyleSpans : batch) {
+            text.append(textStyleSpans.getText());
+            textStyleSpans.getStyleSpans().forEach(spansBuilder::add);
+        }
+
+        return new TextStyleSpans(text.toString(), spansBuilder.create());
+    }
+
     private synchronized void addOutput(TextStyleSpans textStyleSpans) {
         output.add(textStyleSpans);
+        outputLength += textStyleSpans.getText().length();
+
+        if (outputLength > outputLimit) {
+            trimOutput();
+        }
+    }
+
+    private void trimOutput() {
+        long length = outputLength;
+        long trimmedLength = outputLimit * 3L / 4;
+        int count = 0;
+
+        while (count < output.size() - 1 && length > trimmedLength) {
+            length -= output.get(count).getText().length();
+            count++;
+        }
+
+        List<TextStyleSpans> evicted = new ArrayList<>(output.subList(0, count));
+        output.remove(0, count);
+        outputLength = length;
+
+        spill(evicted);
+    }
+
+    private void spill(List<TextStyleSpans> evicted) {
+
+        if (spillFile == null || evicted.isEmpty()) {
+            return;
+        }
+
+        Path file = spillFile;
+        String text = evicted.stream().map(TextStyleSpans::getText).collect(Collectors.joining());
+
+        SPILL_WRITER.execute(() -> AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+            try {
+                write(file, text);
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (spillFile == file) {
+                        spillFile = null;
+                    }
+                }
+
+                LOGGER.log(Level.INFO, e.getMessage(), e);
+            }
+
+            return null;
+        }));
+    }
+
+    private static void write(Path file, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        if (Files.exists(file) && Files.size(file) + bytes.length > MAX_SPILL_SIZE) {
+            Files.move(file, file.resolveSibling(file.getFileName() + ".1"), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        Files.write(file, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
     }
 
     private class ConsoleOutputStream extends ByteArrayOutputStream {
@@ -126,8 +338,13 @@ public class ConsoleModel {
         }
 
         @Override
-        public synchronized void flush() throws IOException {
-            String string = toString();
+        public void flush() throws IOException {
+            String string;
+
+            synchronized (this) {
+                string = toString();
+                reset();
+            }
 
             if (string.isEmpty()) {
                 return;
@@ -136,10 +353,11 @@ public class ConsoleModel {
             // Windows OS
             string = string.replace("\r", "");
 
-            TextStyleSpans textStyleSpans = new TextStyleSpans(string, style);
+            List<TextStyleSpans> textStyleSpans = List.of(new TextStyleSpans(string, style));
 
-            addOutput(textStyleSpans);
-            reset();
+            // Echoed by the writer, so the echo does not depend on the FX thread.
+            echo(ERROR_STYLE.equals(style) ? echoErr : echoOut, textStyleSpans);
+            enqueue(textStyleSpans);
         }
     }
 
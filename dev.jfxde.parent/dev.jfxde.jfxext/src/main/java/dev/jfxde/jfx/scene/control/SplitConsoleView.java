@@ -8,11 +8,12 @@ import java.util.stream.Collectors;
 import org.fxmisc.flowless.VirtualizedScrollPane;
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
 
 import dev.jfxde.fxmisc.richtext.ContextMenuBuilder;
 import dev.jfxde.fxmisc.richtext.TextStyleSpans;
-import javafx.application.Platform;
+import dev.jfxde.jfx.application.XPlatform;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener.Change;
 import javafx.collections.ObservableList;
@@ -129,12 +130,14 @@ public class SplitConsoleView extends BorderPane {
                 if (c.wasAdded()) {
                     List<? extends TextStyleSpans> added = new ArrayList<>(c.getAddedSubList());
 
-                    Platform.runLater(() -> {
+                    // The output is added in batches on the FX thread.
+                    XPlatform.runFX(() -> {
                         for (TextStyleSpans span : added) {
                             int from = outputArea.getLength();
                             outputArea.appendText(span.getText());
                             outputArea.setStyleSpans(from, span.getStyleSpans());
                         }
+                        trimOutputArea();
                         outputArea.moveTo(outputArea.getLength());
                         outputArea.requestFollowCaret();
                     });
@@ -143,6 +146,23 @@ public class SplitConsoleView extends BorderPane {
         });
     }
 
+    // Removes the oldest paragraphs down to three quarters of the output limit.
+    private void trimOutputArea() {
+        int limit = consoleModel.getOutputLimit();
+
+        if (outputArea.getLength() <= limit) {
+            return;
+        }
+
+        int excess = outputArea.getLength() - limit * 3 / 4;
+        int paragraph = outputArea.offsetToPosition(excess, Bias.Forward).getMajor();
+        int end = paragraph + 1 < outputArea.getParagraphs().size() ? outputArea.getAbsolutePosition(paragraph + 1, 0) : excess;
+
+        outputArea.deleteText(0, end);
+        // The output area is not editable, the undo history would only keep the removed text.
+        outputArea.getUndoManager().forgetHistory();
+    }
+
     private void enter() {
 
         // Null char may come from clipboard.
@@ -13,28 +13,78 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class Lexer {
 
+    // Characters after a change which a lookbehind of the next tokens can still see.
+    private static final int LOOKBEHIND = 128;
+
     private Pattern pattern;
     private List<String> groups;
+    private int[] groupIndices;
     private String openTokenPattern;
     private Map<String, String> openCloseTypes = new HashMap<>();
     private Map<String, String> closeOpenTypes = new HashMap<>();
     private List<Token> tokens = new ArrayList<>();
+    // The tokens from the gap, which is after the last changed range, are
+    // positioned relative to the end of the input, so they are shifted at once.
+    private Offset tail = new Offset();
+    private int gap;
     private Map<String, Deque<Token>> tokenStack = new HashMap<>();
     private Token tokenOnCaretPosition;
+    // Starts of gaps between tokens where lexing read to the end of the input, e.g. an unterminated comment.
+    private List<Integer> openPositions = new ArrayList<>();
+    private volatile boolean tokenized;
+    private volatile Change change;
 
     private Lexer(String regex, List<String> groups, String openingTokenPattern) {
         this.pattern = Pattern.compile(regex);
         this.groups = groups;
         this.openTokenPattern = openingTokenPattern;
+        this.groupIndices = getGroupIndices(regex, groups, pattern.matcher("").groupCount());
         extractOpenCloseTokens();
     }
 
+    /**
+     * Finds the indices of the named groups so that the type of a token is
+     * resolved by group index. Returns null if the groups cannot be resolved.
+     */
+    private static int[] getGroupIndices(String regex, List<String> groups, int groupCount) {
+        Map<String, Integer> indices = new HashMap<>();
+        int index = 0;
+        boolean inClass = false;
+
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) != '?') {
+                    index++;
+                } else if (i + 3 < regex.length() && regex.charAt(i + 2) == '<' && Character.isLetter(regex.charAt(i + 3))) {
+                    index++;
+                    int end = regex.indexOf('>', i + 3);
+                    indices.put(regex.substring(i + 3, end), index);
+                }
+            }
+        }
+
+        if (index != groupCount || !indices.keySet().containsAll(groups)) {
+            return null;
+        }
+
+        return groups.stream().mapToInt(indices::get).toArray();
+    }
+
     private void extractOpenCloseTokens() {
 
         String open = null;
@@ -84,10 +134,18 @@ public class Lexer {
         tokens.clear();
         tokenStack.clear();
         tokenOnCaretPosition = null;
+        openPositions = new ArrayList<>();
+        tokenized = true;
+        change = null;
+        tail = new Offset();
+        tail.value = input.length();
 
         while (matcher.find()) {
-            String type = groups.stream().filter(g -> matcher.group(g) != null).findFirst().orElse("");
-            Token token = new Token(matcher.start(), matcher.end(), type, matcher.group());
+            Token token = createToken(matcher);
+
+            if (matcher.hitEnd()) {
+                openPositions.add(lastEnd);
+            }
 
             if (token.isOnCaretPosition(caretPosition)) {
                 tokenOnCaretPosition = token;
@@ -99,9 +157,342 @@ public class Lexer {
             lastEnd = matcher.end();
         }
 
+        if (matcher.hitEnd()) {
+            openPositions.add(lastEnd);
+        }
+
+        gap = tokens.size();
+
         return lastEnd;
     }
 
+    /**
+     * Records a change of the input since the last tokenization. Successive
+     * changes are merged into one changed range.
+     *
+     * @param position start of the change
+     * @param removedLength length of the removed text
+     * @param insertedLength length of the inserted text
+     */
+    public void change(int position, int removedLength, int insertedLength) {
+        int removedEnd = position + removedLength;
+        Change previous = change;
+
+        if (previous == null) {
+            change = new Change(position, removedEnd, position + insertedLength);
+        } else {
+            change = new Change(Math.min(previous.start, position),
+                    previous.oldEnd + Math.max(0, removedEnd - previous.newEnd),
+                    Math.max(previous.newEnd, removedEnd) + insertedLength - removedLength);
+        }
+    }
+
+    /**
+     * Re-tokenizes only the part of the input affected by the changes recorded
+     * since the last tokenization. Lexing starts at the paragraph before the
+     * change, or earlier if a token spans into it or lexing of a previous part
+     * read to the end of the input, and stops as soon as a token
+     * after the change coincides with a previous token, from where on the
+     * previous tokens are reused. The consumer receives only the new tokens.
+     * <p>
+     * The state of the lexer is not modified, so this method can run on a
+     * background thread. The result takes effect when it is passed to
+     * {@link #apply(Tokenization, int)}.
+     *
+     * @param input the changed input
+     * @param consumer receives the end of the previous token and a new token
+     * @return the tokenization of the changed range or null if the thread was
+     *         interrupted
+     */
+    public Tokenization tokenizeChange(String input, BiConsumer<Integer, Token> consumer) {
+        List<Token> tokens = this.tokens;
+        List<Integer> openPositions = this.openPositions;
+        Change change = this.change;
+
+        if (!tokenized) {
+            tokens = List.of();
+            openPositions = List.of();
+            change = new Change(0, 0, input.length());
+        } else if (change == null) {
+            return new Tokenization(change, 0, 0, 0, tokens.size(), tokens.size(), 0, List.of(), openPositions);
+        }
+
+        int delta = change.newEnd - change.oldEnd;
+        int restart = change.start > 0 ? input.lastIndexOf('\n', change.start - 1) : -1;
+        restart = restart > 0 ? input.lastIndexOf('\n', restart - 1) + 1 : 0;
+
+        if (!openPositions.isEmpty()) {
+            restart = Math.min(restart, openPositions.get(0));
+        }
+
+        int lexingStart = restart;
+        int first = findFirst(tokens, 0, t -> t.getEnd() > lexingStart);
+
+        if (first < tokens.size() && tokens.get(first).getStart() < restart) {
+            restart = tokens.get(first).getStart();
+        }
+
+        int oldEnd = change.oldEnd;
+        int old = findFirst(tokens, first, t -> t.getStart() >= oldEnd);
+
+        int nextParagraph = input.indexOf('\n', change.newEnd);
+        int syncFrom = Math.max(nextParagraph < 0 ? input.length() : nextParagraph + 1, change.newEnd + LOOKBEHIND);
+
+        Matcher matcher = pattern.matcher(input);
+        matcher.useTransparentBounds(true);
+        matcher.useAnchoringBounds(false);
+        matcher.region(restart, input.length());
+
+        List<Token> newTokens = new ArrayList<>();
+        List<Integer> newOpenPositions = new ArrayList<>();
+        int lastEnd = restart;
+        int end = input.length();
+        int synced = tokens.size();
+        boolean hitEnd = true;
+
+        while (hitEnd = matcher.find()) {
+
+            if ((newTokens.size() & 0xff) == 0 && Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+
+            Token token = createToken(matcher);
+
+            while (old < tokens.size() && tokens.get(old).getStart() + delta < token.getStart()) {
+                old++;
+            }
+
+            if (token.getStart() >= syncFrom && old < tokens.size() && isSame(tokens.get(old), token, delta)) {
+                end = token.getStart();
+                synced = old;
+                break;
+            }
+
+            if (matcher.hitEnd()) {
+                newOpenPositions.add(lastEnd);
+            }
+
+            newTokens.add(token);
+            consumer.accept(lastEnd, token);
+            lastEnd = matcher.end();
+        }
+
+        if (!hitEnd && matcher.hitEnd()) {
+            newOpenPositions.add(lastEnd);
+        }
+
+        int from = restart;
+        int syncEnd = end;
+        List<Integer> positions = new ArrayList<>(openPositions);
+        positions.removeIf(p -> p >= from && p < syncEnd - delta);
+        positions.replaceAll(p -> p >= from ? p + delta : p);
+        positions.addAll(newOpenPositions);
+        positions.sort(null);
+
+        return new Tokenization(change, restart, lastEnd, end, first, synced, delta, newTokens, positions);
+    }
+
+    /**
+     * Replaces the tokens of the changed range with the new ones and shifts
+     * the tokens after it. Must be called on the thread which records the
+     * changes and with the input unchanged since the tokenization was computed.
+     * <p>
+     * The work is proportional to the changed range and the distance from the
+     * previous change, unless the brackets in the range change, which can
+     * change the pairs of all brackets.
+     *
+     * @param tokenization the result of {@link #tokenizeChange(String, BiConsumer)}
+     * @param caretPosition caret position
+     */
+    public void apply(Tokenization tokenization, int caretPosition) {
+
+        if (tokenization.change != null) {
+            int first = tokenization.first;
+            int synced = tokenization.synced;
+            List<Token> oldBrackets = getBrackets(tokens.subList(first, synced));
+            List<Token> newBrackets = getBrackets(tokenization.tokens);
+            boolean sameBrackets = isSameTypes(oldBrackets, newBrackets);
+
+            if (sameBrackets) {
+                passPairs(oldBrackets, newBrackets);
+            }
+
+            moveGap(first, synced, tokenization.delta);
+            replace(first, synced, tokenization.tokens);
+            gap = first + tokenization.tokens.size();
+
+            if (!sameBrackets) {
+                pairAll();
+            }
+
+            openPositions = tokenization.openPositions;
+            tokenized = true;
+            change = null;
+        }
+
+        tokenOnCaretPosition = findToken(caretPosition);
+    }
+
+    /**
+     * Makes the positions of the tokens before the changed range absolute and
+     * of the tokens after it relative to the end of the input, and shifts the
+     * end of the input.
+     */
+    private void moveGap(int first, int synced, int delta) {
+
+        for (int i = gap; i < first; i++) {
+            tokens.get(i).setOffset(null);
+        }
+
+        for (int i = synced; i < gap; i++) {
+            tokens.get(i).setOffset(tail);
+        }
+
+        tail.value += delta;
+    }
+
+    /**
+     * Replaces the tokens in place, so that the tokens after them are moved
+     * only if their number changes.
+     */
+    private void replace(int from, int to, List<Token> newTokens) {
+        int common = Math.min(to - from, newTokens.size());
+
+        for (int i = 0; i < common; i++) {
+            tokens.set(from + i, newTokens.get(i));
+        }
+
+        if (common < to - from) {
+            tokens.subList(from + common, to).clear();
+        } else {
+            tokens.addAll(to, newTokens.subList(common, newTokens.size()));
+        }
+    }
+
+    private List<Token> getBrackets(List<Token> tokens) {
+        return tokens.stream()
+                .filter(t -> openCloseTypes.containsKey(t.getType()) || closeOpenTypes.containsKey(t.getType()))
+                .collect(Collectors.toList());
+    }
+
+    private static boolean isSameTypes(List<Token> oldBrackets, List<Token> newBrackets) {
+
+        if (oldBrackets.size() != newBrackets.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < oldBrackets.size(); i++) {
+            if (!oldBrackets.get(i).getType().equals(newBrackets.get(i).getType())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Passes the pairs of the replaced brackets to the new ones. The brackets
+     * of the same types pair the same way, so the pairs of the other brackets
+     * do not change.
+     */
+    private static void passPairs(List<Token> oldBrackets, List<Token> newBrackets) {
+        Map<Token, Token> replacements = new HashMap<>();
+
+        for (int i = 0; i < oldBrackets.size(); i++) {
+            replacements.put(oldBrackets.get(i), newBrackets.get(i));
+        }
+
+        for (int i = 0; i < oldBrackets.size(); i++) {
+            Token opposite = oldBrackets.get(i).getOppositeToken();
+            Token token = newBrackets.get(i);
+
+            if (opposite == null) {
+                continue;
+            }
+
+            Token newOpposite = replacements.get(opposite);
+
+            if (newOpposite != null) {
+                token.setOppositeToken(newOpposite);
+            } else {
+                token.setOppositeToken(opposite);
+                opposite.setOppositeToken(token);
+            }
+        }
+    }
+
+    private void pairAll() {
+        tokenStack.clear();
+        tokens.forEach(t -> {
+            t.setOppositeToken(null);
+            updateStack(t);
+        });
+    }
+
+    /**
+     * @return the index of the first token from the given index which meets
+     *         the condition, which all the tokens after it meet too
+     */
+    private static int findFirst(List<Token> tokens, int from, Predicate<Token> condition) {
+        int low = from;
+        int high = tokens.size();
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (condition.test(tokens.get(mid))) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+    private static boolean isSame(Token oldToken, Token newToken, int delta) {
+        return oldToken.getStart() + delta == newToken.getStart()
+                && oldToken.getEnd() + delta == newToken.getEnd()
+                && oldToken.getType().equals(newToken.getType());
+    }
+
+    private Token createToken(Matcher matcher) {
+        String type = "";
+
+        if (groupIndices != null) {
+            for (int i = 0; i < groupIndices.length; i++) {
+                if (matcher.start(groupIndices[i]) >= 0) {
+                    type = groups.get(i);
+                    break;
+                }
+            }
+        } else {
+            type = groups.stream().filter(g -> matcher.group(g) != null).findFirst().orElse("");
+        }
+
+        return new Token(matcher.start(), matcher.end(), type, matcher.group());
+    }
+
+    private Token findToken(int caretPosition) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        Token result = null;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Token token = tokens.get(mid);
+
+            if (token.getStart() <= caretPosition) {
+                result = token;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return result != null && result.isOnCaretPosition(caretPosition) ? result : null;
+    }
+
     private void updateStack(Token token) {
         String closeType = openCloseTypes.get(token.getType());
         if (closeType != null) {
@@ -170,4 +561,82 @@ public class Lexer {
 
         return result;
     }
+
+    /**
+     * The offset of the token positions relative to it.
+     */
+    static final class Offset {
+
+        int value;
+    }
+
+    private static final class Change {
+
+        private final int start;
+        private final int oldEnd;
+        private final int newEnd;
+
+        private Change(int start, int oldEnd, int newEnd) {
+            this.start = start;
+            this.oldEnd = oldEnd;
+            this.newEnd = newEnd;
+        }
+    }
+
+    public static final class Tokenization {
+
+        private final Change change;
+        private final int start;
+        private final int lastEnd;
+        private final int end;
+        private final int first;
+        private final int synced;
+        private final int delta;
+        private final List<Token> tokens;
+        private final List<Integer> openPositions;
+
+        private Tokenization(Change change, int start, int lastEnd, int end, int first, int synced, int delta, List<Token> tokens,
+                List<Integer> openPositions) {
+            this.change = change;
+            this.start = start;
+            this.lastEnd = lastEnd;
+            this.end = end;
+            this.first = first;
+            this.synced = synced;
+            this.delta = delta;
+            this.tokens = tokens;
+            this.openPositions = openPositions;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return the end of the last new token
+         */
+        public int getLastEnd() {
+            return lastEnd;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * @param position a position in the input before the change
+         * @return the position in the changed input or -1 if it is in the
+         *         re-tokenized range
+         */
+        public int map(int position) {
+
+            if (position < start) {
+                return position;
+            } else if (position >= end - delta) {
+                return position + delta;
+            }
+
+            return -1;
+        }
+    }
 }
@@ -10,6 +10,8 @@ public class Token {
     private String type;
     private String value;
     private int length;
+    // Positions are relative to the offset if not null.
+    private Lexer.Offset offset;
     private Token oppositeToken;
     private List<String> style = new ArrayList<>();
 
@@ -26,11 +28,11 @@ public class Token {
     }
 
     public int getStart() {
-        return start;
+        return offset == null ? start : start + offset.value;
     }
 
     public int getEnd() {
-        return end;
+        return offset == null ? end : end + offset.value;
     }
 
     public String getType() {
@@ -54,13 +56,24 @@ public class Token {
     }
 
     public boolean isOnCaretPosition(int caretPosition) {
-        return start <= caretPosition && caretPosition <= end;
+        return getStart() <= caretPosition && caretPosition <= getEnd();
     }
 
     public boolean isDelimiter() {
         return (isOpen(type) || isClose(type)) && oppositeToken != null;
     }
 
+    /**
+     * Makes the positions relative to another offset, or absolute if it is
+     * null, without changing them.
+     */
+    void setOffset(Lexer.Offset offset) {
+        int delta = (this.offset == null ? 0 : this.offset.value) - (offset == null ? 0 : offset.value);
+        start += delta;
+        end += delta;
+        this.offset = offset;
+    }
+
     public void setOppositeToken(Token oppositeToken) {
         this.oppositeToken = oppositeToken;
     }
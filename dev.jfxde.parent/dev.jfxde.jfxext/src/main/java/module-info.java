@@ -26,7 +26,7 @@ module dev.jfxde.jfxext {
     exports dev.jfxde.fxmisc.richtext to dev.jfxde.sysapps, dev.jfxde.logic;
 
     exports dev.jfxde.j.nio.file to dev.jfxde.logic, dev.jfxde.sysapps;
-    exports dev.jfxde.j.util to dev.jfxde.logic, dev.jfxde.sysapps;
+    exports dev.jfxde.j.util to dev.jfxde.logic, dev.jfxde.sysapps, java.management;
     exports dev.jfxde.j.util.prefs to dev.jfxde.logic;
     exports dev.jfxde.j.util.search to dev.jfxde.logic, dev.jfxde.sysapps;
 
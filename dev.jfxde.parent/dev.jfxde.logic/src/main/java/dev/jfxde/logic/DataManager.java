@@ -10,6 +10,7 @@ import dev.jfxde.data.entity.DataRoot;
 import dev.jfxde.data.entity.Desktop;
 import dev.jfxde.data.entity.Shortcut;
 import dev.jfxde.data.entity.Window;
+import dev.jfxde.jfx.application.XPlatform;
 import dev.jfxde.logic.data.AppProviderDescriptor;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyObjectProperty;
@@ -27,7 +28,8 @@ public final class DataManager extends Manager {
 
     @Override
     void init() {
-        storageManager = new StorageManager(dataRoot, FileManager.DB_DIR.toFile());
+        // Entities are modified on the FX thread, so they are serialized there too.
+        storageManager = new StorageManager(dataRoot, FileManager.DB_DIR.toFile(), XPlatform::runFX, StorageManager.DEFAULT_STORE_INTERVAL);
 
         initData();
     }
@@ -1,12 +1,16 @@
 package dev.jfxde.logic;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.logging.Logger;
 
+import javax.management.ObjectName;
+
 import dev.jfxde.j.nio.file.WatchServiceRegister;
 import  dev.jfxde.logic.Constants;
+import dev.jfxde.logic.data.ContentIndex;
 import dev.jfxde.logic.data.FXPath;
 
 public final class FileManager extends Manager {
@@ -20,6 +24,7 @@ public final class FileManager extends Manager {
     public static final Path USER_CONF_DIR = Path.of(USER_DIR + "conf");
     public static final Path DB_DIR = Path.of(USER_DIR + "data/db");
     public static final Path APP_DATA_DIR = Path.of(USER_DIR + "appdata");
+    public static final Path CONTENT_INDEX_FILE = Path.of(USER_DIR + "data/index/content.idx");
     public static final Path USER_PREFS_FILE = Path.of(USER_CONF_DIR + "/preferences.properties");
 
     public static final Path SYSTEM_CONF_DIR = Path.of(HOME_DIR + "conf");
@@ -39,8 +44,10 @@ public final class FileManager extends Manager {
 
     private final WatchServiceRegister watchServiceRegister = new WatchServiceRegister();
     private final FileLocker fileLocker = new FileLocker(Path.of(LOCK_FILE), Path.of(MESSAGE_FILE));
+    private final ContentIndex contentIndex = new ContentIndex(CONTENT_INDEX_FILE);
 
     private static final Logger LOGGER = Logger.getLogger(FileManager.class.getName());
+    private static final String PATH_CACHE_NAME = "dev.jfxde:type=Cache,name=FXPath";
 
     FileManager() {
 	}
@@ -58,6 +65,9 @@ public final class FileManager extends Manager {
     	watchServiceRegister.start();
         fileLocker.lock();
         FXPath.setWatchServiceRegister(watchServiceRegister);
+        contentIndex.load();
+        watchServiceRegister.addListener(contentIndex::update);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(FXPath.getCacheStatistics(), new ObjectName(PATH_CACHE_NAME));
         LOGGER.exiting(FileManager.class.getName(), "init");
     }
 
@@ -65,8 +75,14 @@ public final class FileManager extends Manager {
         fileLocker.watch(messageHandler, watchServiceRegister);
     }
 
+    public ContentIndex getContentIndex() {
+        return contentIndex;
+    }
+
     void stop() throws Exception {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(PATH_CACHE_NAME));
         watchServiceRegister.stop();
+        contentIndex.store();
     	fileLocker.stop();
     }
 }
@@ -4,52 +4,142 @@ import java.io.IOException;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.concurrent.ForkJoinPool;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.json.bind.Jsonb;
 import javax.json.bind.JsonbBuilder;
 import javax.json.bind.JsonbConfig;
 import javax.json.bind.JsonbException;
 
+/**
+ * Reads and writes JSON files.
+ * <p>
+ * Writes are queued per file and only the latest object of a file is
+ * written, atomically via a temporary file. The content of read or written
+ * files is cached until the file changes.
+ */
 public final class JsonUtils {
 
+    private static final Logger LOGGER = Logger.getLogger(JsonUtils.class.getName());
     private static final Jsonb JSONB = JsonbBuilder.create(new JsonbConfig().withFormatting(true));
+    private static final Map<Path, Pending> PENDING = new ConcurrentHashMap<>();
+    private static final Map<Path, Content> CACHE = new ConcurrentHashMap<>();
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "json-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private JsonUtils() {
     }
 
     public static void toJson(Object obj, Path path, String file) {
+        Path fullPath = path.resolve(file).toAbsolutePath().normalize();
 
-        Runnable task = () -> {
-            synchronized (file) {
-                try (var f = Files.newBufferedWriter(path.resolve(file))) {
-                    JSONB.toJson(obj, f);
+        // A new entry per call, so that an object saved again while it is being
+        // written is written once more.
+        if (PENDING.put(fullPath, new Pending(obj)) == null) {
+            WRITER.execute(() -> write(fullPath));
+        }
+    }
+
+    private static void write(Path fullPath) {
+        AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+            Pending pending = PENDING.get(fullPath);
+            Path tmp = fullPath.resolveSibling(fullPath.getFileName() + ".tmp");
 
+            // Pending until written, so that it is read instead of the old file.
+            while (pending != null) {
+                try {
+                    String json = JSONB.toJson(pending.obj);
+                    Files.writeString(tmp, json);
+                    Files.move(tmp, fullPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    CACHE.put(fullPath, new Content(json, Files.getLastModifiedTime(fullPath)));
                 } catch (JsonbException | IOException e) {
-                    throw new RuntimeException(e);
+                    CACHE.remove(fullPath);
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
                 }
+
+                // A newer object put meanwhile is written in the next round.
+                if (PENDING.remove(fullPath, pending)) {
+                    break;
+                }
+
+                pending = PENDING.get(fullPath);
             }
-        };
 
-        ForkJoinPool.commonPool().execute(task);
+            return null;
+        });
+    }
+
+    /**
+     * Waits until all queued writes are done.
+     */
+    public static void flush() {
+        try {
+            WRITER.submit(() -> {}).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     public static <T> T fromJson(Path path, String file, Type type, T defaultObj) {
 
         T result = defaultObj;
-        Path fullPath = path.resolve(file);
-        if (Files.exists(fullPath)) {
-            synchronized (file) {
-                try (var f = Files.newBufferedReader(fullPath)) {
+        Path fullPath = path.resolve(file).toAbsolutePath().normalize();
+        Pending pending = PENDING.get(fullPath);
 
-                    result = JSONB.fromJson(f, type);
+        try {
+            if (pending != null) {
+                // A copy of the object waiting to be written.
+                result = JSONB.fromJson(JSONB.toJson(pending.obj), type);
+            } else if (Files.exists(fullPath)) {
+                FileTime modified = Files.getLastModifiedTime(fullPath);
+                Content content = CACHE.get(fullPath);
 
-                } catch (JsonbException | IOException e) {
-                    throw new RuntimeException(e);
+                if (content == null || !content.modified.equals(modified)) {
+                    content = new Content(Files.readString(fullPath), modified);
+                    CACHE.put(fullPath, content);
                 }
+
+                result = JSONB.fromJson(content.json, type);
             }
+        } catch (JsonbException | IOException e) {
+            throw new RuntimeException(e);
         }
 
         return result;
     }
+
+    private static class Pending {
+
+        private final Object obj;
+
+        Pending(Object obj) {
+            this.obj = obj;
+        }
+    }
+
+    private static class Content {
+
+        private final String json;
+        private final FileTime modified;
+
+        Content(String json, FileTime modified) {
+            this.json = json;
+            this.modified = modified;
+        }
+    }
 }
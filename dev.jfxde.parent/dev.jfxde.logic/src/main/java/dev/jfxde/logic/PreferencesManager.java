@@ -33,6 +33,12 @@ public final class PreferencesManager extends Manager {
         ResourceManager.setLocale(getLocale());
     }
 
+    @Override
+    void stop() throws Exception {
+        Preferences.systemRoot().flush();
+        Preferences.userRoot().flush();
+    }
+
     public void setLocale(String locale) {
 
         ResourceManager.setLocale(locale);
@@ -94,6 +94,8 @@ public final class Sys {
         for (int i = startSequence.size() - 1; i >= 0; i--) {
             startSequence.get(i).stop();
         }
+
+        JsonUtils.flush();
     }
 
     private void setSecurityPolicy() throws Exception {
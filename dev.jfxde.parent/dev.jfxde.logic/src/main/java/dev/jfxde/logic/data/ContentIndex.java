@@ -0,0 +1,621 @@
+package dev.jfxde.logic.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import dev.jfxde.j.nio.file.ContentDetector;
+import dev.jfxde.j.nio.file.ContentInfo;
+import dev.jfxde.j.util.search.PatternLiterals;
+
+/**
+ * Persistent trigram index of text file contents.
+ * <p>
+ * For each trigram of lower-cased ASCII characters the index keeps the ids of
+ * the files containing it. A search pattern is reduced to the literal
+ * trigrams every match must contain and the index shortlists the files having
+ * all of them. Files that are not indexed or have changed since indexing are
+ * always candidates, so the index narrows the search but never hides matches.
+ * <p>
+ * The index is built in the background once per search root and session and
+ * kept current from the events of watched directories.
+ */
+public class ContentIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(ContentIndex.class.getName());
+
+    private static final int MAGIC = 0x4A465849;
+    private static final int VERSION = 1;
+    private static final long MAX_FILE_SIZE = 16 * 1024 * 1024;
+    private static final int TRIGRAMS = 1 << 21;
+    // Number of unused ids from which the ids are compacted if they outnumber the used ones.
+    private static final int MIN_COMPACTED_IDS = 1024;
+    private static final int INDEXER_COUNT = 2;
+    private static final AtomicInteger INDEXER_NUMBER = new AtomicInteger();
+    private static final ExecutorService INDEXERS = Executors.newFixedThreadPool(INDEXER_COUNT, r -> {
+        Thread thread = new Thread(r, "content-index-" + INDEXER_NUMBER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Trigram buffers of the indexer threads.
+    private static final ThreadLocal<BitSet> TRIGRAM_BUFFERS = ThreadLocal.withInitial(() -> new BitSet(TRIGRAMS));
+
+    private final Path file;
+    // Sorted, so that the files under a removed directory are found in a range.
+    private final NavigableMap<Path, Entry> entries = new TreeMap<>();
+    private final Map<Integer, Posting> postings = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final Set<Path> roots = ConcurrentHashMap.newKeySet();
+    // Roots built or being built in this session.
+    private final Set<Path> built = ConcurrentHashMap.newKeySet();
+    private final Set<Path> updating = ConcurrentHashMap.newKeySet();
+    private final Queue<Path> updates = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+    private int nextId;
+    // Incremented when the ids are compacted, queries of older generations accept every file.
+    private int generation;
+    private volatile boolean changed;
+
+    public ContentIndex(Path file) {
+        this.file = file;
+    }
+
+    public synchronized void load() {
+        if (Files.notExists(file)) {
+            return;
+        }
+
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+
+            int rootCount = in.readInt();
+            for (int i = 0; i < rootCount; i++) {
+                roots.add(Path.of(in.readUTF()));
+            }
+
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                var path = Path.of(in.readUTF());
+                entries.put(path, new Entry(i, in.readLong(), in.readLong()));
+            }
+
+            int postingCount = in.readInt();
+            for (int i = 0; i < postingCount; i++) {
+                int trigram = in.readInt();
+                int size = in.readInt();
+                var posting = new Posting(size);
+                for (int j = 0; j < size; j++) {
+                    posting.add(in.readInt());
+                }
+                postings.put(trigram, posting);
+            }
+
+            nextId = entryCount;
+            live.set(0, entryCount);
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, e.getMessage(), e);
+            clear();
+        }
+    }
+
+    public synchronized void store() {
+        if (!changed) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(file.getParent());
+            var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                out.writeInt(roots.size());
+                for (var root : roots) {
+                    out.writeUTF(root.toString());
+                }
+
+                // Ids of removed files are dropped, the stored ids are contiguous.
+                var ids = getStoredIds();
+                var sorted = new Path[entries.size()];
+                entries.forEach((p, e) -> sorted[ids[e.id]] = p);
+                out.writeInt(sorted.length);
+                for (var path : sorted) {
+                    var entry = entries.get(path);
+                    out.writeUTF(path.toString());
+                    out.writeLong(entry.modified);
+                    out.writeLong(entry.size);
+                }
+
+                var stored = new HashMap<Integer, int[]>();
+                postings.forEach((t, p) -> {
+                    var postingIds = p.remap(ids);
+                    if (postingIds.length > 0) {
+                        stored.put(t, postingIds);
+                    }
+                });
+
+                out.writeInt(stored.size());
+                for (var e : stored.entrySet()) {
+                    out.writeInt(e.getKey());
+                    out.writeInt(e.getValue().length);
+                    for (int id : e.getValue()) {
+                        out.writeInt(id);
+                    }
+                }
+            }
+
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            changed = false;
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Indexes new and changed files under the roots in the background. Roots
+     * already built in this session, or under such roots, are skipped, they
+     * are kept current by the watch events.
+     *
+     * @param searchRoots directories or files to be indexed
+     * @return future completed when the index has been built and stored
+     */
+    public CompletableFuture<Void> build(Collection<Path> searchRoots) {
+        List<Path> toBuild = new ArrayList<>();
+        searchRoots.stream()
+                .filter(r -> r != null && built.stream().noneMatch(r::startsWith) && built.add(r))
+                .forEach(toBuild::add);
+
+        if (toBuild.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        roots.addAll(toBuild);
+
+        return CompletableFuture.runAsync(() -> {
+            try {
+                var trigrams = TRIGRAM_BUFFERS.get();
+                for (var root : toBuild) {
+                    Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                        @Override
+                        public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                            if (attrs.isRegularFile() && !isCurrent(path, attrs.lastModifiedTime().toMillis(), attrs.size())) {
+                                index(path, attrs, trigrams);
+                            }
+
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path path, IOException e) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.INFO, e.getMessage(), e);
+            }
+
+            store();
+        }, INDEXERS);
+    }
+
+    /**
+     * Updates the index from the events of a watched directory.
+     *
+     * @param dir watched directory
+     * @param events events of the directory
+     */
+    public void update(Path dir, List<WatchEvent<?>> events) {
+        for (var event : events) {
+            if (!(event.context() instanceof Path)) {
+                continue;
+            }
+
+            var path = dir.resolve((Path) event.context());
+
+            if (roots.stream().noneMatch(path::startsWith)) {
+                continue;
+            }
+
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                remove(path);
+            } else if (updating.add(path)) {
+                updates.add(path);
+            }
+        }
+
+        scheduleUpdates();
+    }
+
+    /**
+     * Indexes the updated paths one after another in one indexer task.
+     */
+    private void scheduleUpdates() {
+        if (!updates.isEmpty() && updateScheduled.compareAndSet(false, true)) {
+            INDEXERS.execute(this::runUpdates);
+        }
+    }
+
+    private void runUpdates() {
+        var trigrams = TRIGRAM_BUFFERS.get();
+        Path path;
+
+        while ((path = updates.poll()) != null) {
+            updating.remove(path);
+
+            try {
+                if (Files.isRegularFile(path)) {
+                    var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    if (!isCurrent(path, attrs.lastModifiedTime().toMillis(), attrs.size())) {
+                        index(path, attrs, trigrams);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, e.getMessage(), e);
+            }
+        }
+
+        updateScheduled.set(false);
+        scheduleUpdates();
+    }
+
+    /**
+     * Creates a filter of candidate files for the pattern.
+     *
+     * @param pattern search pattern
+     * @return filter accepting files which may contain a match
+     */
+    public synchronized Predicate<Path> query(Pattern pattern) {
+        int[] trigrams = pattern == null ? new int[0] : getTrigrams(pattern);
+
+        if (trigrams.length == 0) {
+            return p -> true;
+        }
+
+        BitSet candidates = null;
+
+        for (int trigram : trigrams) {
+            var posting = postings.get(trigram);
+            var ids = new BitSet(nextId);
+
+            if (posting != null) {
+                for (int i = 0; i < posting.size; i++) {
+                    ids.set(posting.ids[i]);
+                }
+            }
+
+            if (candidates == null) {
+                candidates = ids;
+            } else {
+                candidates.and(ids);
+            }
+        }
+
+        candidates.and(live);
+
+        return new Query(candidates, nextId, generation);
+    }
+
+    private synchronized boolean isCurrent(Path path, long modified, long size) {
+        var entry = entries.get(path);
+
+        return entry != null && entry.modified == modified && entry.size == size;
+    }
+
+    private synchronized Entry getEntry(Path path, int queryGeneration) {
+        return queryGeneration == generation ? entries.get(path) : null;
+    }
+
+    private void index(Path path, BasicFileAttributes attrs, BitSet trigrams) {
+        if (attrs.size() > MAX_FILE_SIZE) {
+            return;
+        }
+
+        ContentInfo content;
+
+        try {
+            content = attrs.isSymbolicLink() ? ContentDetector.detect(path) : ContentDetector.detect(path, attrs);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+            return;
+        }
+
+        if (!content.isText()) {
+            return;
+        }
+
+        trigrams.clear();
+
+        try (Reader reader = Files.newBufferedReader(path, content.getCharset())) {
+            var buffer = new char[8192];
+            int trigram = 0;
+            int run = 0;
+            int read;
+
+            while ((read = reader.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    int c = toIndexChar(buffer[i]);
+
+                    if (c < 0) {
+                        run = 0;
+                        continue;
+                    }
+
+                    trigram = ((trigram << 7) | c) & (TRIGRAMS - 1);
+
+                    if (++run >= 3) {
+                        trigrams.set(trigram);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Not decodable as text, keep it out of the index so that it stays a candidate.
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+            return;
+        }
+
+        put(path, attrs.lastModifiedTime().toMillis(), attrs.size(), trigrams);
+    }
+
+    private synchronized void put(Path path, long modified, long size, BitSet trigrams) {
+        removeEntry(path);
+
+        int id = nextId++;
+        entries.put(path, new Entry(id, modified, size));
+        live.set(id);
+
+        for (int t = trigrams.nextSetBit(0); t >= 0; t = trigrams.nextSetBit(t + 1)) {
+            postings.computeIfAbsent(t, k -> new Posting(4)).add(id);
+        }
+
+        changed = true;
+        compact();
+    }
+
+    private synchronized void remove(Path path) {
+        removeEntry(path);
+        new ArrayList<>(getDescendants(path).keySet()).stream().filter(p -> p.startsWith(path)).forEach(this::removeEntry);
+        compact();
+    }
+
+    /**
+     * Returns the range of the entries which contains the descendants of the
+     * path. Paths are ordered by their strings, so the range ends before the
+     * path followed by the character after the separator. It also contains
+     * siblings whose names extend the name of the path with a smaller
+     * character, e.g. a.txt for a.
+     */
+    private NavigableMap<Path, Entry> getDescendants(Path path) {
+        var name = path.getFileName();
+
+        if (name == null) {
+            return entries.tailMap(path, false);
+        }
+
+        char next = (char) (path.getFileSystem().getSeparator().charAt(0) + 1);
+
+        return entries.subMap(path, false, path.resolveSibling(name.toString() + next), false);
+    }
+
+    /**
+     * Drops the ids of removed and re-indexed files from the postings when
+     * they outnumber the ids in use.
+     */
+    private void compact() {
+        int used = entries.size();
+        int unused = nextId - used;
+
+        if (unused < MIN_COMPACTED_IDS || unused < used) {
+            return;
+        }
+
+        var ids = getStoredIds();
+        entries.replaceAll((p, e) -> new Entry(ids[e.id], e.modified, e.size));
+        postings.replaceAll((t, p) -> new Posting(p.remap(ids)));
+        postings.values().removeIf(p -> p.size == 0);
+
+        nextId = used;
+        live.clear();
+        live.set(0, used);
+        generation++;
+    }
+
+    private void removeEntry(Path path) {
+        var entry = entries.remove(path);
+
+        if (entry != null) {
+            live.clear(entry.id);
+            changed = true;
+        }
+    }
+
+    private int[] getStoredIds() {
+        var ids = new int[nextId];
+        Arrays.fill(ids, -1);
+        int storedId = 0;
+
+        for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+            ids[id] = storedId++;
+        }
+
+        return ids;
+    }
+
+    private synchronized void clear() {
+        entries.clear();
+        postings.clear();
+        live.clear();
+        roots.clear();
+        nextId = 0;
+    }
+
+    private static int toIndexChar(char c) {
+        if (c >= 128 || c == '\n' || c == '\r') {
+            return -1;
+        }
+
+        return Character.toLowerCase(c);
+    }
+
+    private static int toQueryChar(char c, boolean unicodeCase) {
+        int result = toIndexChar(c);
+
+        // These letters also match non-ASCII characters in Unicode case-insensitive mode.
+        if (unicodeCase && (result == 'k' || result == 's')) {
+            result = -1;
+        }
+
+        return result;
+    }
+
+    static int[] getTrigrams(Pattern pattern) {
+        int unicodeFlags = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+        boolean unicodeCase = (pattern.flags() & unicodeFlags) == unicodeFlags;
+
+        var literals = PatternLiterals.getLiterals(pattern);
+
+        var trigrams = new BitSet(TRIGRAMS);
+
+        for (String literal : literals) {
+            int trigram = 0;
+            int run = 0;
+
+            for (int i = 0; i < literal.length(); i++) {
+                int c = toQueryChar(literal.charAt(i), unicodeCase);
+
+                if (c < 0) {
+                    run = 0;
+                    continue;
+                }
+
+                trigram = ((trigram << 7) | c) & (TRIGRAMS - 1);
+
+                if (++run >= 3) {
+                    trigrams.set(trigram);
+                }
+            }
+        }
+
+        return trigrams.stream().toArray();
+    }
+
+    private static class Entry {
+
+        private final int id;
+        private final long modified;
+        private final long size;
+
+        Entry(int id, long modified, long size) {
+            this.id = id;
+            this.modified = modified;
+            this.size = size;
+        }
+    }
+
+    private static class Posting {
+
+        private int[] ids;
+        private int size;
+
+        Posting(int capacity) {
+            ids = new int[Math.max(1, capacity)];
+        }
+
+        Posting(int[] ids) {
+            this.ids = ids.length > 0 ? ids : new int[1];
+            size = ids.length;
+        }
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+
+            ids[size++] = id;
+        }
+
+        int[] remap(int[] newIds) {
+            var result = new int[size];
+            int newSize = 0;
+
+            for (int i = 0; i < size; i++) {
+                int id = newIds[ids[i]];
+                if (id >= 0) {
+                    result[newSize++] = id;
+                }
+            }
+
+            return Arrays.copyOf(result, newSize);
+        }
+    }
+
+    private class Query implements Predicate<Path> {
+
+        private final BitSet candidates;
+        private final int limit;
+        private final int generation;
+
+        Query(BitSet candidates, int limit, int generation) {
+            this.candidates = candidates;
+            this.limit = limit;
+            this.generation = generation;
+        }
+
+        @Override
+        public boolean test(Path path) {
+            var entry = getEntry(path, generation);
+
+            if (entry == null || entry.id >= limit) {
+                return true;
+            }
+
+            try {
+                var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                if (entry.modified != attrs.lastModifiedTime().toMillis() || entry.size != attrs.size()) {
+                    return true;
+                }
+            } catch (IOException e) {
+                return true;
+            }
+
+            return candidates.get(entry.id);
+        }
+    }
+}
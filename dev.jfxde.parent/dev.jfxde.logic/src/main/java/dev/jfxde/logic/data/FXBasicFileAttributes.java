@@ -1,7 +1,8 @@
 package dev.jfxde.logic.data;
 
+import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
 
@@ -18,23 +19,33 @@ public class FXBasicFileAttributes {
     private LongProperty lastModifiedTime;
 
     public FXBasicFileAttributes(FXPath fxpath) {
+        this(fxpath, readAttributes(fxpath));
+    }
+
+    /**
+     * Creates the attributes from already read ones, e.g. while listing a
+     * directory.
+     */
+    public FXBasicFileAttributes(FXPath fxpath, BasicFileAttributes attributes) {
 
         this.fxpath = fxpath;
 
+        setCreationTime(attributes.creationTime().toMillis());
+        setLastModifiedTime(attributes.lastModifiedTime().toMillis());
+
+        // The size of a directory is not known until computed.
+        setSize(fxpath.isDirectory() ? -1 : attributes.size());
+    }
+
+    private static BasicFileAttributes readAttributes(FXPath fxpath) {
         try {
-            var fileAttributes = Files.getFileAttributeView(fxpath.getPath(), BasicFileAttributeView.class);
-            setCreationTime(fileAttributes.readAttributes().creationTime().toMillis());
-            setLastModifiedTime(fileAttributes.readAttributes().lastModifiedTime().toMillis());
-
-            if (!fxpath.isDirectory()) {
-                setSize(Files.size(fxpath.getPath()));
-            }
-        } catch (Exception e) {
+            return Files.readAttributes(fxpath.getPath(), BasicFileAttributes.class);
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private void setSize(long value) {
+    void setSize(long value) {
         getSizeProperty().set(value);
     }
 
@@ -53,7 +64,7 @@ public class FXBasicFileAttributes {
 
                 @Override
                 public String toString() {
-                    return fxpath.isDirectory() ? "" : NumberFormat.getInstance().format(Math.ceil(get() / 1024.0)) + " KiB";
+                    return get() < 0 ? "" : NumberFormat.getInstance().format(Math.ceil(get() / 1024.0)) + " KiB";
                 }
             };
         }
@@ -1,6 +1,8 @@
 package dev.jfxde.logic.data;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -9,8 +11,11 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import dev.jfxde.j.nio.file.ConflictPolicy;
 import dev.jfxde.j.nio.file.XFiles;
 
 public final class FXFiles {
@@ -20,13 +25,14 @@ public final class FXFiles {
 
     public static FXPath createDirectory(FXPath parent, String name) {
         FXPath pathDescriptor = null;
-        FXPath.getLock().lock();
+        var lock = FXPath.getLock(parent);
+        lock.lock();
         try {
             Path path = XFiles.createDirectory(parent.getPath(), name);
 
             pathDescriptor = FXPath.createDirectory(parent, path);
         } finally {
-            FXPath.getLock().unlock();
+            lock.unlock();
         }
 
         return pathDescriptor;
@@ -34,69 +40,53 @@ public final class FXFiles {
 
     public static FXPath createFile(FXPath parent, String name) {
         FXPath pathDescriptor = null;
-        FXPath.getLock().lock();
+        var lock = FXPath.getLock(parent);
+        lock.lock();
         try {
             Path path = XFiles.createFile(parent.getPath(), name);
 
             pathDescriptor = FXPath.createFile(parent, path);
         } finally {
-            FXPath.getLock().unlock();
+            lock.unlock();
         }
         return pathDescriptor;
     }
 
-    public static CompletableFuture<Void> move(List<FXPath> pds, FXPath targetDir) {
-        var future = CompletableFuture.runAsync(() -> {
-            FXPath.getLock().lock();
-            try {
-                pds.forEach(pd -> {
-                    Path target = XFiles.move(pd.getPath(), targetDir.getPath());
-                    pd.move(targetDir, target);
-                });
-            } finally {
-                FXPath.getLock().unlock();
-            }
-        });
-        return future;
+    /**
+     * Returns an operation to be executed as a task, e.g. by a task controller.
+     */
+    public static FileOperation move(List<FXPath> pds, FXPath targetDir) {
+        return move(pds, targetDir, ConflictPolicy.RENAME);
     }
 
-    public static CompletableFuture<Void> copy(List<FXPath> pds, FXPath targetDir) {
-        var future = CompletableFuture.runAsync(() -> {
-            FXPath.getLock().lock();
-            try {
-                pds.forEach(pd -> {
-                    Path target = XFiles.copy(pd.getPath(), targetDir.getPath());
-                    FXPath.copy(targetDir, target);
-                });
-            } finally {
-                FXPath.getLock().unlock();
-            }
-        });
-        return future;
+    public static FileOperation move(List<FXPath> pds, FXPath targetDir, ConflictPolicy policy) {
+        return new FileOperation(FileOperation.Kind.MOVE, pds, targetDir, policy);
     }
 
-    public static CompletableFuture<Void> delete(List<FXPath> pds) {
+    /**
+     * Returns an operation to be executed as a task, e.g. by a task controller.
+     */
+    public static FileOperation copy(List<FXPath> pds, FXPath targetDir) {
+        return copy(pds, targetDir, ConflictPolicy.RENAME);
+    }
 
-        var future = CompletableFuture.runAsync(() -> {
-            FXPath.getLock().lock();
-            try {
-                pds.forEach(pd -> {
-                    XFiles.delete(pd.getPath());
-                    pd.delete();
-                });
-            } finally {
-                FXPath.getLock().unlock();
-            }
-        });
+    public static FileOperation copy(List<FXPath> pds, FXPath targetDir, ConflictPolicy policy) {
+        return new FileOperation(FileOperation.Kind.COPY, pds, targetDir, policy);
+    }
 
-        return future;
+    /**
+     * Returns an operation to be executed as a task, e.g. by a task controller.
+     */
+    public static FileOperation delete(List<FXPath> pds) {
+        return new FileOperation(FileOperation.Kind.DELETE, pds, null, ConflictPolicy.RENAME);
     }
 
     public static boolean rename(FXPath pd, String name) {
         boolean renamed = false;
         var targetPath = pd.getPath().resolveSibling(name);
         if (Files.notExists(targetPath)) {
-            FXPath.getLock().lock();
+            var lock = FXPath.getLock(pd.getParent()).withSubtrees(pd);
+            lock.lock();
             try {
                 pd.unwatchPaths();
                 Files.move(pd.getPath(), targetPath);
@@ -105,21 +95,26 @@ public final class FXFiles {
             } catch (IOException e) {
                 throw new RuntimeException(e);
             } finally {
-                FXPath.getLock().unlock();
+                lock.unlock();
             }
         }
         return renamed;
     }
 
     public static CompletableFuture<Void> save(FXPath path, String string) {
+        return save(path, string, StandardCharsets.UTF_8);
+    }
+
+    public static CompletableFuture<Void> save(FXPath path, String string, Charset charset) {
 
         CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-            FXPath.getLock().lock();
+            var lock = FXPath.getLock(path.getParent(), path);
+            lock.lock();
             try {
-                Path newPath = XFiles.save(path.getPath(), string);
+                Path newPath = XFiles.save(path.getPath(), string, charset);
                 path.saved(newPath);
             } finally {
-                FXPath.getLock().unlock();
+                lock.unlock();
             }
         });
 
@@ -127,20 +122,21 @@ public final class FXFiles {
     }
 
     public static CompletableFuture<Void> search(List<FXPath> searchPaths, String pathPattern, Pattern textRegex, Consumer<FilePosition> consumer, AtomicBoolean stop) {
-        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
-            FXPath.getLock().lock();
-            try {
-                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pathPattern);
-                searchPaths.forEach(p -> p.search(matcher, textRegex, consumer, stop));
-            } catch(Exception e) {
-                stop.set(true);
-                throw new RuntimeException(e);
-            }
-            finally {
-                FXPath.getLock().unlock();
-            }
-        });
+        return search(searchPaths, pathPattern, textRegex, p -> true, consumer, stop);
+    }
 
-        return future;
+    public static CompletableFuture<Void> search(List<FXPath> searchPaths, String pathPattern, Pattern textRegex, Predicate<Path> candidates,
+            Consumer<FilePosition> consumer, AtomicBoolean stop) {
+        try {
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pathPattern);
+            var roots = searchPaths.stream()
+                    .flatMap(p -> p.getSearchPaths().stream())
+                    .collect(Collectors.toList());
+
+            return new FileSearch(matcher, textRegex, candidates, consumer, stop).search(roots);
+        } catch(Exception e) {
+            stop.set(true);
+            return CompletableFuture.failedFuture(new RuntimeException(e));
+        }
     }
 }
@@ -2,37 +2,44 @@ package dev.jfxde.logic.data;
 
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.nio.file.DirectoryIteratorException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.nio.file.PathMatcher;
 import java.nio.file.StandardWatchEventKinds;
 import java.nio.file.WatchEvent;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
+import dev.jfxde.j.nio.file.DirectorySizes;
 import dev.jfxde.j.nio.file.WatchServiceRegister;
-import dev.jfxde.j.nio.file.XFiles;
-import dev.jfxde.j.util.search.Searcher;
+import dev.jfxde.j.util.CacheMXBean;
+import dev.jfxde.j.util.WeakValueCache;
+import dev.jfxde.jfx.application.XPlatform;
 import dev.jfxde.jfx.embed.swing.FXUtils;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyBooleanProperty;
@@ -43,6 +50,7 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener.Change;
 import javafx.collections.ObservableList;
 import javafx.scene.Node;
 import javafx.scene.control.Label;
@@ -52,12 +60,12 @@ import javafx.scene.image.ImageView;
 public class FXPath implements Comparable<FXPath> {
 
     private static final Logger LOGGER = Logger.getLogger(FXPath.class.getName());
+    private static final int LEAVES_BATCH_SIZE = 64;
 
     private static WeakReference<FXPath> ROOT = new WeakReference<FXPath>(null);
 
-    private final static Map<Path, WeakReference<FXPath>> CACHE = new WeakHashMap<>();
+    private final static WeakValueCache<Path, FXPath> CACHE = new WeakValueCache<>();
     private static WatchServiceRegister watchServiceRegister;
-    private static final ReentrantLock LOCK = new ReentrantLock();
 
     private Consumer<List<WatchEvent<?>>> directoryWatcher;
     private List<Predicate<FXPath>> onDelete = new ArrayList<>();
@@ -71,18 +79,37 @@ public class FXPath implements Comparable<FXPath> {
     private StringProperty name;
     private String newName;
     private BooleanProperty directory = new SimpleBooleanProperty();
-    private Set<FXPath> parents = new HashSet<>();
+    private Set<FXPath> parents = ConcurrentHashMap.newKeySet();
     private ObservableList<FXPath> paths = FXCollections.observableArrayList();
+    // Paths by name, kept in sync with paths.
+    private Map<String, FXPath> index = new ConcurrentHashMap<>();
     private volatile boolean loaded;
-    private AtomicBoolean dirLeaf;
-    private AtomicBoolean leaf;
+    private volatile AtomicBoolean dirLeaf;
+    private volatile AtomicBoolean leaf;
+    // Whether the leaves are being set in the background.
+    private final AtomicBoolean leavesPending = new AtomicBoolean();
+    // Set on the FX thread when the leaves were set in the background.
+    private final BooleanProperty leavesSet = new SimpleBooleanProperty();
     private FXBasicFileAttributes basicFileAttributes;
+    private AtomicInteger useCount = new AtomicInteger();
+    // Last modified time of the directory when it was unwatched or -1 if watched.
+    private volatile long unwatchedModified = -1;
+    // Whether the size of the directory was computed and is to be kept up to date.
+    private volatile boolean sizeComputed;
 
     private FXPath() {
         setListeners();
     }
 
     private FXPath(FXPath parent, Path path, boolean dir) {
+        this(parent, path, dir, null);
+    }
+
+    private FXPath(FXPath parent, Path path, BasicFileAttributes attributes) {
+        this(parent, path, attributes.isDirectory(), attributes);
+    }
+
+    private FXPath(FXPath parent, Path path, boolean dir, BasicFileAttributes attributes) {
         if (parent != null) {
             this.parents.add(parent);
         }
@@ -95,25 +122,107 @@ public class FXPath implements Comparable<FXPath> {
             directoryWatcher = this::watchDirectory;
         }
 
-        setFileAttributes();
+        if (attributes == null) {
+            setFileAttributes();
+        } else {
+            setFileAttributes(attributes);
+        }
     }
 
     private void setListeners() {
+        paths.addListener((Change<? extends FXPath> c) -> {
+            while (c.next()) {
+                c.getRemoved().forEach(p -> {
+                    if (!index.remove(getKey(p.getPath()), p)) {
+                        index.values().remove(p);
+                    }
+                });
+                c.getAddedSubList().forEach(p -> index.put(getKey(p.getPath()), p));
+            }
+        });
+
         path.addListener((v, o, n) -> {
             if (n != null) {
                 Path fileName = n.getFileName();
                 setName(fileName == null ? n.toString() : fileName.toString());
-                setImage(FXUtils.getIcon(getPath()));
+                if (image != null) {
+                    loadImage();
+                }
             }
         });
     }
 
     public static void setWatchServiceRegister(WatchServiceRegister watchServiceRegister) {
         FXPath.watchServiceRegister = watchServiceRegister;
+        watchServiceRegister.addUnwatchListener(FXPath::unwatched);
+    }
+
+    private static void unwatched(Path path) {
+        var fxpath = getFromCache(path);
+
+        if (fxpath != null) {
+            long modified = 0;
+
+            try {
+                modified = Files.getLastModifiedTime(path).toMillis();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, e.getMessage(), e);
+            }
+
+            fxpath.unwatchedModified = modified;
+        }
+    }
+
+    /**
+     * Marks the directory as in use, e.g. shown expanded or containing an
+     * open file, so that it stays watched. If it was unwatched in the
+     * meantime, it is watched again and rescanned if it has changed.
+     */
+    public void use() {
+        if (useCount.getAndIncrement() == 0 && isDirectory() && getPath() != null) {
+            if (watchServiceRegister != null) {
+                watchServiceRegister.setInUse(getPath(), true);
+            }
+
+            revalidate();
+        }
+    }
+
+    public void release() {
+        if (useCount.decrementAndGet() == 0 && isDirectory() && getPath() != null && watchServiceRegister != null) {
+            watchServiceRegister.setInUse(getPath(), false);
+        }
+    }
+
+    private void revalidate() {
+        if (unwatchedModified < 0 || !isLoaded()) {
+            return;
+        }
+
+        ForkJoinPool.commonPool().execute(() -> {
+            List<FXPath> removed = new ArrayList<>();
+            var lock = getLock(this);
+            lock.lock();
+            try {
+                long modified = unwatchedModified;
+                unwatchedModified = -1;
+                watch();
+
+                if (modified >= 0 && modified != Files.getLastModifiedTime(getPath()).toMillis()) {
+                    rescan(removed);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.INFO, e.getMessage(), e);
+            } finally {
+                lock.unlock();
+            }
+
+            deleteAllExternally(removed);
+        });
     }
 
-    static Lock getLock() {
-        return LOCK;
+    static PathLock getLock(FXPath... fxpaths) {
+        return PathLock.of(fxpaths);
     }
 
     public List<Consumer<FXPath>> getOnModified() {
@@ -133,19 +242,23 @@ public class FXPath implements Comparable<FXPath> {
     }
 
     public static void addOnDeletedGlobally(Consumer<FXPath> consumer) {
-        onDeletedGlobally.add(new WeakReference<>(consumer));
+        synchronized (onDeletedGlobally) {
+            onDeletedGlobally.add(new WeakReference<>(consumer));
+        }
     }
 
     private void onDeletedGlobally(FXPath path) {
-        var i = onDeletedGlobally.iterator();
+        synchronized (onDeletedGlobally) {
+            var i = onDeletedGlobally.iterator();
 
-        while (i.hasNext()) {
-            var consumer = i.next().get();
+            while (i.hasNext()) {
+                var consumer = i.next().get();
 
-            if (consumer == null) {
-                i.remove();
-            } else {
-                consumer.accept(path);
+                if (consumer == null) {
+                    i.remove();
+                } else {
+                    consumer.accept(path);
+                }
             }
         }
     }
@@ -220,7 +333,8 @@ public class FXPath implements Comparable<FXPath> {
         removeFromCache(getPath());
         var oldPath = getPath();
         setPath(newPath);
-        getFromCache(getPath(), p -> new WeakReference<>(this));
+        getFromCache(getPath(), p -> this);
+        parents.forEach(p -> p.reindex(this, getKey(oldPath)));
 
         paths.forEach(p -> p.rename(oldPath, getPath()));
 
@@ -231,7 +345,7 @@ public class FXPath implements Comparable<FXPath> {
         removeFromCache(getPath());
         var relative = oldParent.relativize(getPath());
         setPath(newParent.resolve(relative));
-        getFromCache(getPath(), p -> new WeakReference<>(this));
+        getFromCache(getPath(), p -> this);
         watch();
 
         paths.forEach(p -> p.rename(oldParent, newParent));
@@ -242,7 +356,7 @@ public class FXPath implements Comparable<FXPath> {
         new ArrayList<>(parents).stream().filter(p -> !p.isPseudoPath()).forEach(p -> p.remove(this));
         var oldPath = getPath();
         setPath(newPath);
-        getFromCache(getPath(), p -> new WeakReference<>(this));
+        getFromCache(getPath(), p -> this);
 
         paths.forEach(p -> p.rename(oldPath, getPath()));
 
@@ -280,14 +394,17 @@ public class FXPath implements Comparable<FXPath> {
     }
 
     private void deleteExternally() {
+        notifyDeletedExternally();
+        delete(p -> p.deleteExternally());
+    }
+
+    private void notifyDeletedExternally() {
         onDeletedExternally.forEach(c -> c.accept(this));
         onDeletedGlobally(this);
         // Keep in cache if listened to, e.g. file in an editor can be saved again.
         if (onDeletedExternally.isEmpty()) {
             removeFromCache(getPath());
         }
-
-        delete(p -> p.deleteExternally());
     }
 
     private void delete(Consumer<FXPath> delete) {
@@ -327,6 +444,45 @@ public class FXPath implements Comparable<FXPath> {
         }
     }
 
+    private void removeAll(Collection<FXPath> pds) {
+        pds.forEach(pd -> pd.parents.remove(this));
+        paths.removeAll(new HashSet<>(pds));
+
+        if (paths.isEmpty()) {
+            setDirLeaf(true);
+            setLeaf(true);
+            setLoaded(false);
+        }
+    }
+
+    private void addAll(Collection<FXPath> pds) {
+        if (isLoaded()) {
+            paths.addAll(pds);
+        }
+
+        if (pds.stream().anyMatch(FXPath::isDirectory)) {
+            setDirLeaf(false);
+        }
+
+        setLeaf(false);
+    }
+
+    FXPath getChild(Path path) {
+        return index.get(getKey(path));
+    }
+
+    private void reindex(FXPath pd, String oldKey) {
+        if (index.remove(oldKey, pd)) {
+            index.put(getKey(pd.getPath()), pd);
+        }
+    }
+
+    private static String getKey(Path path) {
+        Path fileName = path.getFileName();
+
+        return fileName == null ? path.toString() : fileName.toString();
+    }
+
     public FXPath getParent() {
         return parents.stream().filter(p -> !p.isPseudoPath()).findFirst().orElse(null);
     }
@@ -350,11 +506,27 @@ public class FXPath implements Comparable<FXPath> {
     private ObjectProperty<Image> imageProperty() {
         if (image == null) {
             image = new SimpleObjectProperty<>();
+            loadImage();
         }
 
         return image;
     }
 
+    // The icon is loaded when the graphic is requested for the first time.
+    private void loadImage() {
+        Path p = getPath();
+
+        if (p == null) {
+            return;
+        }
+
+        FXUtils.getIconAsync(p, isDirectory()).thenAccept(i -> XPlatform.runFX(() -> {
+            if (p.equals(getPath())) {
+                setImage(i);
+            }
+        }));
+    }
+
     public Node getGraphic() {
 
         ImageView imageView = new ImageView();
@@ -443,11 +615,11 @@ public class FXPath implements Comparable<FXPath> {
 
     public boolean isDirLeaf() {
 
-        if (dirLeaf == null) {
-            setDirLeaf(!isDirectory() || !Files.isReadable(getPath()) || !XFiles.hasSubDirs(getPath()));
+        if (dirLeaf == null && !setLeavesLater()) {
+            setLeaves();
         }
 
-        return dirLeaf.get();
+        return dirLeaf != null && dirLeaf.get();
     }
 
     private void setDirLeaf(boolean value) {
@@ -460,11 +632,102 @@ public class FXPath implements Comparable<FXPath> {
 
     public boolean isLeaf() {
 
+        if (leaf == null && !setLeavesLater()) {
+            setLeaves();
+        }
+
+        return leaf != null && leaf.get();
+    }
+
+    /**
+     * Does not scan a directory on the FX thread. Until its leaves are set in
+     * the background, it is not a leaf.
+     */
+    private boolean setLeavesLater() {
+        if (!isDirectory() || !Platform.isFxApplicationThread()) {
+            return false;
+        }
+
+        prefetchLeaves(List.of(this));
+
+        return true;
+    }
+
+    public ReadOnlyBooleanProperty leavesSetProperty() {
+        return leavesSet;
+    }
+
+    /**
+     * Sets leaf and dir leaf in one scan of the directory that stops at the
+     * first readable subdirectory.
+     */
+    private void setLeaves() {
+        boolean readableEntry = false;
+        boolean readableDir = false;
+
+        if (isDirectory() && Files.isReadable(getPath())) {
+            try (var stream = Files.newDirectoryStream(getPath())) {
+                for (var p : stream) {
+                    boolean dir = Files.isDirectory(p);
+
+                    if ((dir || !readableEntry) && Files.isReadable(p)) {
+                        readableEntry = true;
+                        readableDir = dir;
+                    }
+
+                    if (readableDir) {
+                        break;
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         if (leaf == null) {
-            setLeaf(!isDirectory() || !Files.isReadable(getPath()) || !XFiles.isEmpty(getPath()));
+            setLeaf(!readableEntry);
         }
 
-        return leaf.get();
+        if (dirLeaf == null) {
+            setDirLeaf(!readableDir);
+        }
+    }
+
+    /**
+     * Sets the leaves of the directories in the background in batches, each
+     * reported to the FX thread at once.
+     */
+    private static void prefetchLeaves(List<FXPath> fxpaths) {
+        var dirs = fxpaths.stream()
+                .filter(p -> p.isDirectory() && (p.leaf == null || p.dirLeaf == null))
+                .filter(p -> p.leavesPending.compareAndSet(false, true))
+                .collect(Collectors.toList());
+
+        for (int i = 0; i < dirs.size(); i += LEAVES_BATCH_SIZE) {
+            var batch = dirs.subList(i, Math.min(i + LEAVES_BATCH_SIZE, dirs.size()));
+
+            ForkJoinPool.commonPool().execute(() -> {
+                batch.forEach(p -> {
+                    try {
+                        p.setLeaves();
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.INFO, e.getMessage(), e);
+
+                        if (p.leaf == null) {
+                            p.setLeaf(true);
+                        }
+
+                        if (p.dirLeaf == null) {
+                            p.setDirLeaf(true);
+                        }
+                    } finally {
+                        p.leavesPending.set(false);
+                    }
+                });
+
+                XPlatform.runFX(() -> batch.forEach(p -> p.leavesSet.set(true)));
+            });
+        }
     }
 
     private void setLeaf(boolean value) {
@@ -500,14 +763,18 @@ public class FXPath implements Comparable<FXPath> {
 
         if (!loaded && value) {
             loaded = value;
+            // Just listed, so changes made while unwatched do not matter.
+            unwatchedModified = -1;
             watch();
         }
 
         loaded = value;
     }
 
+    // A directory unwatched because of the limit is watched again only when
+    // used, see revalidate(), not whenever it is looked up.
     private void watch() {
-        if (watchServiceRegister != null && getPath() != null && isDirectory() && isLoaded()) {
+        if (watchServiceRegister != null && getPath() != null && isDirectory() && isLoaded() && unwatchedModified < 0) {
             setPath(watchServiceRegister.register(getPath(), directoryWatcher));
         }
     }
@@ -519,16 +786,22 @@ public class FXPath implements Comparable<FXPath> {
         }
 
         ForkJoinPool.commonPool().execute(() -> {
-            getLock().lock();
+            List<FXPath> loadedPaths;
+            var lock = getLock(this);
+            lock.lock();
             try {
                 if (!isLoaded()) {
                     loadSync(paths);
                 }
 
                 consumer.accept(paths);
+                loadedPaths = new ArrayList<>(paths);
             } finally {
-                getLock().unlock();
+                lock.unlock();
             }
+
+            // The children are shown first and their subdirectories scanned after.
+            prefetchLeaves(loadedPaths);
         });
     }
 
@@ -560,9 +833,11 @@ public class FXPath implements Comparable<FXPath> {
 
             while (iterator.hasNext()) {
                 var p = iterator.next();
-                boolean directory = Files.isDirectory(p);
-                var pd = getFromCache(this, p, directory);
-                loadedPaths.add(pd);
+                var attributes = readAttributes(p);
+
+                if (attributes != null) {
+                    loadedPaths.add(getFromCache(this, p, attributes));
+                }
             }
 
         } catch (Exception e) {
@@ -570,10 +845,27 @@ public class FXPath implements Comparable<FXPath> {
         }
     }
 
+    private static BasicFileAttributes readAttributes(Path path) {
+        BasicFileAttributes attributes = null;
+
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            try {
+                // Broken link
+                attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException ex) {
+                // Deleted in the meantime
+            }
+        }
+
+        return attributes;
+    }
+
     private static FXPath addInParent(FXPath parent, Path p, boolean directory) {
         var pd = getFromCache(parent, p, directory);
 
-        if (parent.isLoaded()) {
+        if (parent.isLoaded() && parent.getChild(p) != pd) {
             parent.paths.add(pd);
         }
 
@@ -585,7 +877,7 @@ public class FXPath implements Comparable<FXPath> {
 
     private static FXPath getFromCache(FXPath parent, Path path, boolean dir) {
 
-        var pd = getFromCache(path, k -> new WeakReference<>(new FXPath(parent, path, dir)));
+        var pd = getFromCache(path, k -> new FXPath(parent, path, dir));
 
         if (parent != null) {
             pd.parents.add(parent);
@@ -594,16 +886,20 @@ public class FXPath implements Comparable<FXPath> {
         return pd;
     }
 
-    private static FXPath getFromCache(Path path, Function<Path, WeakReference<FXPath>> function) {
+    private static FXPath getFromCache(FXPath parent, Path path, BasicFileAttributes attributes) {
 
-        var fxpath = CACHE.computeIfAbsent(path, function).get();
+        var pd = getFromCache(path, k -> new FXPath(parent, path, attributes));
 
-        if (fxpath == null) {
-            var ref = function.apply(path);
-            fxpath = ref.get();
-            CACHE.put(path, ref);
+        if (parent != null) {
+            pd.parents.add(parent);
         }
 
+        return pd;
+    }
+
+    private static FXPath getFromCache(Path path, Function<Path, FXPath> function) {
+
+        FXPath fxpath = CACHE.computeIfAbsent(path, function);
         fxpath.watch();
 
         return fxpath;
@@ -611,55 +907,165 @@ public class FXPath implements Comparable<FXPath> {
 
     private static FXPath putToCache(Path path, FXPath fxpath) {
 
-        return getFromCache(path, p -> new WeakReference<>(fxpath));
+        return getFromCache(path, p -> fxpath);
     }
 
-    private static FXPath getFromCache(Path path) {
+    /**
+     * Returns the path for a file found outside the loaded tree. Its parent
+     * directory is not loaded.
+     */
+    static FXPath get(Path path, BasicFileAttributes attributes) {
+        var fxpath = getFromCache(path);
 
-        var ref = CACHE.get(path);
-        var fxpath = ref != null ? ref.get() : null;
+        if (fxpath == null) {
+            var parentPath = path.getParent();
+            var parent = parentPath == null ? null : getFromCache(null, parentPath, true);
+            fxpath = getFromCache(parent, path, attributes);
+        }
 
         return fxpath;
     }
 
+    private static FXPath getFromCache(Path path) {
+
+        return CACHE.get(path);
+    }
+
+    public static CacheMXBean getCacheStatistics() {
+        return CACHE;
+    }
+
     private static void removeFromCache(Path path) {
         CACHE.remove(path);
     }
 
     private void watchDirectory(List<WatchEvent<?>> events) {
-        getLock().lock();
+        List<FXPath> removed = new ArrayList<>();
+        var lock = getLock(this);
+        lock.lock();
         try {
+            // Consecutive creates and deletes are applied to paths at once.
+            Map<String, FXPath> created = new LinkedHashMap<>();
+            List<FXPath> deleted = new ArrayList<>();
+
             events.forEach(e -> {
 
-                if (e.context() instanceof Path) {
+                if (e.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    addCreated(created);
+                    removeAllExternally(deleted, removed);
+                    rescan(removed);
+                } else if (e.context() instanceof Path) {
                     var contextPath = getPath().resolve((Path) e.context());
 
                     if (e.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
-                        if (paths.stream().noneMatch(p -> p.getPath().equals(contextPath))) {
-                            addInParent(this, contextPath, Files.isDirectory(contextPath));
+                        removeAllExternally(deleted, removed);
+
+                        if (getChild(contextPath) == null && !created.containsKey(getKey(contextPath))) {
+                            var attributes = readAttributes(contextPath);
+
+                            if (attributes != null) {
+                                created.put(getKey(contextPath), getFromCache(this, contextPath, attributes));
+                            }
                         }
                     } else if (e.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
                         var fxpath = getFromCache(contextPath);
-                        try {
-                            if (fxpath != null && Files.exists(contextPath)
-                                    && fxpath.basicFileAttributes.getLastModifiedTime() != Files.getLastModifiedTime(contextPath).toMillis()) {
-                                fxpath.setFileAttributes();
-                                fxpath.onModified.forEach(c -> c.accept(fxpath));
-                            }
-                        } catch (IOException ex) {
-                            throw new RuntimeException(ex);
+                        var attributes = fxpath != null ? readAttributes(contextPath) : null;
+
+                        if (attributes != null && fxpath.basicFileAttributes.getLastModifiedTime() != attributes.lastModifiedTime().toMillis()) {
+                            fxpath.setFileAttributes(attributes);
+                            fxpath.onModified.forEach(c -> c.accept(fxpath));
                         }
                     } else if (e.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        addCreated(created);
                         var fxpath = getFromCache(contextPath);
 
                         if (fxpath != null) {
-                            fxpath.deleteExternally();
+                            deleted.add(fxpath);
                         }
                     }
                 }
             });
+
+            addCreated(created);
+            removeAllExternally(deleted, removed);
+            updateSizes();
+        } finally {
+            lock.unlock();
+        }
+
+        deleteAllExternally(removed);
+    }
+
+    /**
+     * Brings the loaded paths in line with the directory after watch events
+     * were lost.
+     */
+    private void rescan(List<FXPath> removed) {
+        if (!isLoaded()) {
+            return;
+        }
+
+        Map<String, FXPath> created = new LinkedHashMap<>();
+        Map<String, FXPath> deleted = new HashMap<>(index);
+
+        try (var stream = Files.newDirectoryStream(getPath())) {
+            for (var p : stream) {
+                var attributes = readAttributes(p);
+
+                if (attributes == null) {
+                    continue;
+                }
+
+                var fxpath = deleted.remove(getKey(p));
+
+                if (fxpath == null) {
+                    created.put(getKey(p), getFromCache(this, p, attributes));
+                } else if (fxpath.basicFileAttributes.getLastModifiedTime() != attributes.lastModifiedTime().toMillis()) {
+                    fxpath.setFileAttributes(attributes);
+                    fxpath.onModified.forEach(c -> c.accept(fxpath));
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            LOGGER.log(Level.INFO, e.getMessage(), e);
+            return;
+        }
+
+        addCreated(created);
+        removeAllExternally(new ArrayList<>(deleted.values()), removed);
+    }
+
+    private void addCreated(Map<String, FXPath> created) {
+        if (!created.isEmpty()) {
+            addAll(created.values());
+            created.clear();
+        }
+    }
+
+    private void removeAllExternally(List<FXPath> deleted, List<FXPath> removed) {
+        if (!deleted.isEmpty()) {
+            removeAll(deleted);
+            deleted.forEach(FXPath::notifyDeletedExternally);
+            removed.addAll(deleted);
+            deleted.clear();
+        }
+    }
+
+    /**
+     * Deletes the subtrees of the paths removed from a directory. They are
+     * locked only after the directory is unlocked, since stripes must not be
+     * locked out of order.
+     */
+    private static void deleteAllExternally(List<FXPath> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+
+        var lock = getLock().withSubtrees(removed.toArray(new FXPath[0]));
+        lock.lock();
+        try {
+            removed.forEach(p -> p.delete(c -> c.deleteExternally()));
         } finally {
-            getLock().unlock();
+            lock.unlock();
         }
     }
 
@@ -671,64 +1077,80 @@ public class FXPath implements Comparable<FXPath> {
         basicFileAttributes = new FXBasicFileAttributes(this);
     }
 
-    void saved(Path newPath) {
-        if (!getPath().equals(newPath)) {
-            removeFromCache(getPath());
-            setPath(newPath);
-            putToCache(newPath, this);
-        }
+    private void setFileAttributes(BasicFileAttributes attributes) {
+        basicFileAttributes = new FXBasicFileAttributes(this, attributes);
 
-        setFileAttributes();
-        onModified.forEach(c -> c.accept(this));
+        if (sizeComputed) {
+            computeSize(false);
+        }
     }
 
-    void search(PathMatcher pathMatcher, Pattern textRegex, Consumer<FilePosition> consumer, AtomicBoolean stop) {
+    /**
+     * Computes the size of the directory including its subdirectories in the
+     * background and sets it to the size attribute. The size is then updated
+     * on watch events of the directory and its subdirectories until
+     * {@link #stopSizeUpdates()}.
+     *
+     * @param refresh whether to read the whole tree instead of using the
+     *            cached sizes
+     */
+    public CompletableFuture<Long> computeSize(boolean refresh) {
+        if (getPath() == null) {
+            return CompletableFuture.completedFuture(0L);
+        }
 
-        if (!isReadable() || stop.get()) {
-            return;
+        if (!isDirectory()) {
+            return CompletableFuture.completedFuture(basicFileAttributes.sizeProperty().get());
         }
 
-        if (isFile()) {
-            searchFile(pathMatcher, textRegex, consumer, stop);
-        } else {
+        sizeComputed = true;
 
-            List<FXPath> loadedPaths = isLoaded() ? paths : loadSync(paths);
+        return DirectorySizes.size(getPath(), refresh).thenApply(size -> {
+            XPlatform.runFX(() -> basicFileAttributes.setSize(size));
+            return size;
+        });
+    }
 
-            loadedPaths.parallelStream().sorted(Comparator.reverseOrder()).forEach(p -> p.search(pathMatcher, textRegex, consumer, stop));
-        }
+    public void stopSizeUpdates() {
+        sizeComputed = false;
     }
 
-    private void searchFile(PathMatcher pathNatcher, Pattern textRegex, Consumer<FilePosition> consumer, AtomicBoolean stop) {
-        if (stop.get()) {
-            return;
-        }
-        Path fileName = getPath().getFileName();
-        if (fileName != null && pathNatcher.matches(fileName)) {
-            PathFilePosition pathPointer = new PathFilePosition(this);
-            if (textRegex == null) {
-                consumer.accept(pathPointer);
-            } else {
-                find(pathPointer, textRegex, stop);
-                if (!pathPointer.getStringFilePositions().isEmpty()) {
-                    consumer.accept(pathPointer);
-                }
+    // Updates the computed sizes of the directory and its ancestors.
+    private void updateSizes() {
+        DirectorySizes.invalidate(getPath());
+
+        for (FXPath p = this; p != null; p = p.getParent()) {
+            if (p.sizeComputed) {
+                p.computeSize(false);
             }
         }
     }
 
-    private void find(PathFilePosition pathPointer, Pattern pattern, AtomicBoolean stop) {
-        try {
-            if (Files.probeContentType(getPath()).toLowerCase().startsWith("text")) {
+    void saved(Path newPath) {
+        if (!getPath().equals(newPath)) {
+            removeFromCache(getPath());
+            setPath(newPath);
+            putToCache(newPath, this);
+        }
 
-                try (var lines = Files.lines(getPath())) {
-                    Searcher.get().search(lines, pattern, sr -> {
-                        pathPointer.add(new StringFilePosition(sr));
-                        return !stop.get();
-                    });
-                }
-            }
-        } catch (IOException e) {
-            LOGGER.log(Level.INFO, e.getMessage(), e);
+        setFileAttributes();
+        onModified.forEach(c -> c.accept(this));
+    }
+
+    /**
+     * Returns the paths to search in, e.g. the root directories for the
+     * root.
+     */
+    List<Path> getSearchPaths() {
+        if (getPath() != null) {
+            return List.of(getPath());
+        } else if (isRoot()) {
+            List<Path> roots = new ArrayList<>();
+            FileSystems.getDefault().getRootDirectories().forEach(roots::add);
+
+            return roots;
+        } else {
+            return paths.stream().flatMap(p -> p.getSearchPaths().stream()).collect(Collectors.toList());
         }
     }
 
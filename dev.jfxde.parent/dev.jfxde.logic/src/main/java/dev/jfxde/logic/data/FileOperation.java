@@ -0,0 +1,331 @@
+package dev.jfxde.logic.data;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import dev.jfxde.j.nio.file.ConflictPolicy;
+import dev.jfxde.j.nio.file.FileProgress;
+import dev.jfxde.j.nio.file.XFiles;
+import dev.jfxde.jfx.util.FXResourceBundle;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.concurrent.Task;
+
+/**
+ * Moves, copies or deletes files as a task. Its progress counts bytes, or
+ * files when no bytes are copied, and its message shows the files done, the
+ * throughput and the remaining time. It can be paused and cancelled between
+ * files and between chunks of large files.
+ * <p>
+ * Operations whose paths overlap run one after another in the order they
+ * started, other operations run concurrently. Files are transferred without
+ * holding the model locks, which are taken only to update the model.
+ */
+public final class FileOperation extends Task<Void> implements FileProgress {
+
+    public enum Kind {
+        MOVE, COPY, DELETE
+    }
+
+    private static final long MESSAGE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(250);
+    // Started operations in start order, waiting or running.
+    private static final List<FileOperation> STARTED = new ArrayList<>();
+
+    private final Kind kind;
+    private final List<FXPath> sources;
+    private final FXPath targetDir;
+    private final ConflictPolicy policy;
+    private final List<Path> paths;
+    private final ReadOnlyBooleanWrapper paused = new ReadOnlyBooleanWrapper();
+    private final Object pauseLock = new Object();
+    private boolean pauseRequested;
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong lastMessage = new AtomicLong();
+    private volatile long totalBytes;
+    private volatile long totalFiles;
+    private volatile long start;
+    private long pausedTime;
+
+    FileOperation(Kind kind, List<FXPath> sources, FXPath targetDir, ConflictPolicy policy) {
+        this.kind = kind;
+        this.sources = List.copyOf(sources);
+        this.targetDir = targetDir;
+        this.policy = policy;
+
+        List<Path> paths = sources.stream().map(FXPath::getPath).filter(Objects::nonNull).collect(Collectors.toList());
+
+        if (targetDir != null && targetDir.getPath() != null) {
+            paths.add(targetDir.getPath());
+        }
+
+        this.paths = paths;
+
+        String names = sources.stream().map(FXPath::getName).collect(Collectors.joining(", "));
+        updateTitle(targetDir != null
+                ? FXResourceBundle.getBundle().getString​(kind.name().toLowerCase() + "To", names, targetDir.getPath())
+                : FXResourceBundle.getBundle().getString​(kind.name().toLowerCase() + "Files", names));
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public ReadOnlyBooleanProperty pausedProperty() {
+        return paused.getReadOnlyProperty();
+    }
+
+    public boolean isPaused() {
+        return paused.get();
+    }
+
+    public void pause() {
+        paused.set(true);
+
+        synchronized (pauseLock) {
+            pauseRequested = true;
+        }
+    }
+
+    public void resume() {
+        paused.set(false);
+
+        synchronized (pauseLock) {
+            pauseRequested = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+
+        return cancelled;
+    }
+
+    @Override
+    protected Void call() throws Exception {
+        updateMessage(FXResourceBundle.getBundle().getString​("waiting"));
+        awaitTurn();
+
+        try {
+            count();
+            start = System.nanoTime();
+
+            for (FXPath source : sources) {
+                checkpoint();
+                run(source);
+            }
+
+            updateProgress(1, 1);
+            updateMessage("");
+        } finally {
+            synchronized (STARTED) {
+                STARTED.remove(this);
+                STARTED.notifyAll();
+            }
+        }
+
+        return null;
+    }
+
+    private void awaitTurn() throws InterruptedException {
+        synchronized (STARTED) {
+            STARTED.add(this);
+
+            try {
+                while (STARTED.stream().takeWhile(o -> o != this).anyMatch(this::overlaps)) {
+                    STARTED.wait();
+                }
+            } catch (InterruptedException e) {
+                STARTED.remove(this);
+                STARTED.notifyAll();
+                throw e;
+            }
+        }
+    }
+
+    private boolean overlaps(FileOperation operation) {
+        return paths.stream().anyMatch(p -> operation.paths.stream().anyMatch(o -> p.startsWith(o) || o.startsWith(p)));
+    }
+
+    /**
+     * Counts what is to be done. A move within a file store is a rename, so
+     * only the sources are counted.
+     */
+    private void count() throws IOException {
+        for (FXPath source : sources) {
+            if (kind == Kind.MOVE && Files.getFileStore(source.getPath()).equals(Files.getFileStore(targetDir.getPath()))) {
+                totalFiles++;
+                continue;
+            }
+
+            Files.walkFileTree(source.getPath(), new SimpleFileVisitor<>() {
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    checkpoint();
+
+                    if (kind == Kind.DELETE) {
+                        totalFiles++;
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    totalFiles++;
+
+                    if (kind != Kind.DELETE) {
+                        totalBytes += attrs.size();
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+    }
+
+    private void run(FXPath source) {
+        var lock = kind == Kind.COPY ? FXPath.getLock(targetDir) : FXPath.getLock(source.getParent(), source, targetDir);
+
+        if (kind == Kind.DELETE) {
+            XFiles.delete(source.getPath(), this);
+
+            lock = lock.withSubtrees(source);
+            lock.lock();
+            try {
+                source.delete();
+            } finally {
+                lock.unlock();
+            }
+
+            return;
+        }
+
+        FXPath existing;
+
+        lock.lock();
+        try {
+            existing = targetDir.getChild(targetDir.getPath().resolve(source.getPath().getFileName().toString()));
+        } finally {
+            lock.unlock();
+        }
+
+        Path target = kind == Kind.MOVE
+                ? XFiles.move(source.getPath(), targetDir.getPath(), policy, this)
+                : XFiles.copy(source.getPath(), targetDir.getPath(), policy, this);
+
+        if (target == null) {
+            return;
+        }
+
+        // The paths of the moved and the overwritten subtrees are updated too.
+        lock = kind == Kind.MOVE ? lock.withSubtrees(source, existing) : lock.withSubtrees(existing);
+        lock.lock();
+        try {
+            // Overwritten, unless the watcher has already replaced it.
+            if (existing != null && existing != source && existing.getPath().equals(target)
+                    && targetDir.getChild(target) == existing) {
+                existing.delete();
+            }
+
+            if (kind == Kind.MOVE) {
+                source.move(targetDir, target);
+            } else {
+                FXPath.copy(targetDir, target);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void checkpoint() throws IOException {
+        synchronized (pauseLock) {
+            if (pauseRequested && !isCancelled()) {
+                long pausedAt = System.nanoTime();
+
+                try {
+                    while (pauseRequested && !isCancelled()) {
+                        pauseLock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    pausedTime += System.nanoTime() - pausedAt;
+                }
+            }
+        }
+
+        if (isCancelled() || Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Override
+    public void transferred(long bytes) {
+        this.bytes.addAndGet(bytes);
+        update();
+    }
+
+    @Override
+    public void processed(Path path) {
+        files.incrementAndGet();
+        update();
+    }
+
+    private void update() {
+        long now = System.nanoTime();
+        long last = lastMessage.get();
+
+        if (now - last < MESSAGE_INTERVAL || !lastMessage.compareAndSet(last, now)) {
+            return;
+        }
+
+        long doneBytes = bytes.get();
+        long doneFiles = files.get();
+
+        if (totalBytes > 0) {
+            updateProgress(doneBytes, totalBytes);
+        } else {
+            updateProgress(doneFiles, totalFiles);
+        }
+
+        long elapsed;
+
+        synchronized (pauseLock) {
+            elapsed = now - start - pausedTime;
+        }
+
+        double seconds = Math.max(elapsed, 1) / 1e9;
+        double bytesPerSecond = doneBytes / seconds;
+        long remaining = totalBytes > 0
+                ? (long) ((totalBytes - doneBytes) / Math.max(bytesPerSecond, 1))
+                : (long) ((totalFiles - doneFiles) / Math.max(doneFiles / seconds, 1e-3));
+
+        updateMessage(FXResourceBundle.getBundle().getString​("fileOperationProgress", doneFiles, totalFiles,
+                String.format("%.1f", bytesPerSecond / (1 << 20)), String.format("%d:%02d", remaining / 60, remaining % 60)));
+    }
+}
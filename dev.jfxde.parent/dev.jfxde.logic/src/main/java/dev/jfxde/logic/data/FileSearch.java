@@ -0,0 +1,286 @@
+package dev.jfxde.logic.data;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import dev.jfxde.j.nio.file.ContentDetector;
+import dev.jfxde.j.util.search.SearchTimeoutException;
+import dev.jfxde.j.util.search.Searcher;
+
+/**
+ * Searches files by name and content. The file tree is walked without
+ * creating FXPath instances, they are created only for the files found.
+ * <p>
+ * Directories are listed and files are scanned in separate bounded pools, so
+ * that a search neither blocks the common pool nor queues more files than the
+ * scanners can take.
+ * <p>
+ * Matching a file and the whole search have time budgets. Files whose budget
+ * runs out are reported as timed out, when the search budget runs out the
+ * search stops.
+ */
+final class FileSearch {
+
+    private static final Logger LOGGER = Logger.getLogger(FileSearch.class.getName());
+    private static final int WALKER_COUNT = 4;
+    private static final int SCANNER_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final int MAX_QUEUED_SCANS = SCANNER_COUNT * 4;
+    private static final long FILE_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+    private static final long SEARCH_TIMEOUT = TimeUnit.MINUTES.toNanos(10);
+    private static final ExecutorService WALKERS = Executors.newFixedThreadPool(WALKER_COUNT, createThreadFactory("search-walker"));
+    private static final ExecutorService SCANNERS = Executors.newFixedThreadPool(SCANNER_COUNT, createThreadFactory("search-scanner"));
+
+    private final PathMatcher pathMatcher;
+    private final Pattern textRegex;
+    private final Predicate<Path> candidates;
+    private final Consumer<FilePosition> consumer;
+    private final AtomicBoolean stop;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Semaphore scans = new Semaphore(MAX_QUEUED_SCANS);
+    private final CompletableFuture<Void> future = new CompletableFuture<>();
+    private long deadline;
+
+    FileSearch(PathMatcher pathMatcher, Pattern textRegex, Predicate<Path> candidates, Consumer<FilePosition> consumer, AtomicBoolean stop) {
+        this.pathMatcher = pathMatcher;
+        this.textRegex = textRegex;
+        this.candidates = candidates;
+        this.consumer = consumer;
+        this.stop = stop;
+    }
+
+    private static ThreadFactory createThreadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Starts the search. Roots under other roots are searched only once.
+     *
+     * @return future completed when the search ends or is stopped
+     */
+    CompletableFuture<Void> search(Collection<Path> roots) {
+        deadline = System.nanoTime() + SEARCH_TIMEOUT;
+        pending.incrementAndGet();
+        getDistinctRoots(roots).forEach(r -> execute(WALKERS, () -> visit(r)));
+        done();
+
+        return future;
+    }
+
+    private static List<Path> getDistinctRoots(Collection<Path> roots) {
+        List<Path> distinct = new ArrayList<>();
+
+        roots.stream()
+                .map(p -> p.toAbsolutePath().normalize())
+                .sorted()
+                .forEach(p -> {
+                    if (distinct.stream().noneMatch(p::startsWith)) {
+                        distinct.add(p);
+                    }
+                });
+
+        return distinct;
+    }
+
+    private void execute(ExecutorService executor, Runnable task) {
+        pending.incrementAndGet();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+                        task.run();
+                        return null;
+                    });
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.INFO, e.getMessage(), e);
+                } finally {
+                    done();
+                }
+            });
+        } catch (RuntimeException e) {
+            done();
+            throw e;
+        }
+    }
+
+    private void done() {
+        if (pending.decrementAndGet() == 0) {
+            future.complete(null);
+        }
+    }
+
+    private void visit(Path root) {
+        if (stop.get()) {
+            return;
+        }
+
+        try {
+            var attrs = Files.readAttributes(root, BasicFileAttributes.class);
+
+            if (attrs.isDirectory()) {
+                list(root);
+            } else {
+                searchFile(root, attrs);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+        }
+    }
+
+    private void list(Path dir) {
+        if (stop.get() || !Files.isReadable(dir)) {
+            return;
+        }
+
+        try (var stream = Files.newDirectoryStream(dir)) {
+            for (var p : stream) {
+                if (stop.get()) {
+                    break;
+                }
+
+                BasicFileAttributes attrs;
+
+                try {
+                    // Links are not followed.
+                    attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, e.getMessage(), e);
+                    continue;
+                }
+
+                if (attrs.isDirectory()) {
+                    execute(WALKERS, () -> list(p));
+                } else {
+                    searchFile(p, attrs);
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            LOGGER.log(Level.FINE, e.getMessage(), e);
+        }
+    }
+
+    private void searchFile(Path file, BasicFileAttributes attrs) {
+        Path fileName = file.getFileName();
+
+        if (fileName == null || !pathMatcher.matches(fileName) || !isFile(file, attrs) || !Files.isReadable(file)) {
+            return;
+        }
+
+        if (textRegex == null) {
+            consumer.accept(new PathFilePosition(FXPath.get(file, attrs)));
+        } else if (candidates.test(file)) {
+            try {
+                scans.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop.set(true);
+                return;
+            }
+
+            try {
+                execute(SCANNERS, () -> {
+                    try {
+                        scanFile(file, attrs);
+                    } finally {
+                        scans.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                scans.release();
+                throw e;
+            }
+        }
+    }
+
+    private void scanFile(Path file, BasicFileAttributes attrs) {
+        if (stop.get()) {
+            return;
+        }
+
+        List<StringFilePosition> positions = new ArrayList<>();
+        boolean timedOut = find(file, attrs, positions);
+
+        if (!positions.isEmpty() || timedOut) {
+            var pathPosition = new PathFilePosition(FXPath.get(file, attrs));
+            pathPosition.setTimedOut(timedOut);
+            positions.forEach(pathPosition::add);
+            consumer.accept(pathPosition);
+        }
+    }
+
+    private static boolean isFile(Path file, BasicFileAttributes attrs) {
+        return attrs.isSymbolicLink() ? Files.isRegularFile(file) : !attrs.isDirectory();
+    }
+
+    /**
+     * @return true if the file timed out
+     */
+    private boolean find(Path file, BasicFileAttributes attrs, List<StringFilePosition> positions) {
+        long timeout = Math.min(FILE_TIMEOUT, deadline - System.nanoTime());
+
+        if (timeout <= 0) {
+            stopTimedOut();
+            return false;
+        }
+
+        try {
+            var content = attrs.isSymbolicLink() ? ContentDetector.detect(file) : ContentDetector.detect(file, attrs);
+
+            if (content.isText()) {
+
+                Searcher.get().timeout(Duration.ofNanos(timeout)).search(file, content.getCharset(), textRegex, sr -> {
+                    positions.add(new StringFilePosition(sr));
+                    return !stop.get();
+                });
+            }
+        } catch (SearchTimeoutException e) {
+            LOGGER.log(Level.INFO, "Search timed out in " + file);
+
+            if (System.nanoTime() - deadline >= 0) {
+                stopTimedOut();
+            }
+
+            return true;
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, e.getMessage(), e);
+        }
+
+        return false;
+    }
+
+    private void stopTimedOut() {
+        if (!stop.getAndSet(true)) {
+            LOGGER.log(Level.INFO, "Search timed out");
+        }
+    }
+}
@@ -7,6 +7,7 @@ public class PathFilePosition extends FilePosition {
 
     private FXPath path;
     private List<StringFilePosition> stringFilePointers = new ArrayList<>();
+    private boolean timedOut;
 
     public PathFilePosition(FXPath path) {
         this.path = path;
@@ -27,6 +28,18 @@ public class PathFilePosition extends FilePosition {
         return position;
     }
 
+    /**
+     * Whether the search of the file timed out, so its positions can be
+     * incomplete.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    public void setTimedOut(boolean timedOut) {
+        this.timedOut = timedOut;
+    }
+
     public void add(StringFilePosition stringFilePosition) {
         stringFilePosition.setPathFilePointer(this);
         getStringFilePositions().add(stringFilePosition);
@@ -0,0 +1,231 @@
+package dev.jfxde.logic.data;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock over one or more directory nodes of the {@link FXPath} tree.
+ * <p>
+ * Nodes are mapped onto a fixed set of striped reentrant locks by their path,
+ * so operations on unrelated subtrees do not block each other. Stripes are
+ * always acquired in ascending order to avoid deadlocks when an operation
+ * spans several directories, e.g. a move. Therefore an operation which
+ * updates the descendants of a node, e.g. a rename, locks the loaded subtree
+ * of the node at once, see {@link #withSubtrees(FXPath...)}, instead of
+ * locking the descendants one by one. It is not a
+ * {@link java.util.concurrent.locks.Lock} because a condition cannot be bound
+ * to several locks.
+ */
+final class PathLock {
+
+    private static final int STRIPES = 64;
+    private static final long ALL_STRIPES = -1L;
+    private static final ReentrantLock[] LOCKS = new ReentrantLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            LOCKS[i] = new ReentrantLock();
+        }
+    }
+
+    private final FXPath[] fxpaths;
+    private final FXPath[] subtrees;
+    private int[] stripes;
+
+    private PathLock(FXPath[] fxpaths, FXPath[] subtrees) {
+        this.fxpaths = fxpaths;
+        this.subtrees = subtrees;
+    }
+
+    static PathLock of(FXPath... fxpaths) {
+        return new PathLock(fxpaths, new FXPath[0]);
+    }
+
+    /**
+     * Returns a lock which locks also the given nodes and their loaded
+     * descendant directories. The descendants are found again whenever the
+     * lock is locked.
+     */
+    PathLock withSubtrees(FXPath... roots) {
+        FXPath[] all = Arrays.copyOf(subtrees, subtrees.length + roots.length);
+        System.arraycopy(roots, 0, all, subtrees.length, roots.length);
+
+        return new PathLock(fxpaths, all);
+    }
+
+    private static int stripe(FXPath fxpath) {
+        int hash = fxpath.getPath() != null ? fxpath.getPath().hashCode() : System.identityHashCode(fxpath);
+        hash ^= hash >>> 16;
+
+        return hash & (STRIPES - 1);
+    }
+
+    private long getStripeMask() {
+        long mask = 0;
+
+        for (var fxpath : fxpaths) {
+            if (fxpath != null) {
+                mask |= 1L << stripe(fxpath);
+            }
+        }
+
+        Deque<FXPath> stack = new ArrayDeque<>();
+        Arrays.stream(subtrees).filter(Objects::nonNull).forEach(stack::push);
+
+        // Read without the locks, the result is checked when locked.
+        while (!stack.isEmpty() && mask != ALL_STRIPES) {
+            var fxpath = stack.pop();
+            mask |= 1L << stripe(fxpath);
+            pushDirectories(fxpath, stack);
+        }
+
+        return mask;
+    }
+
+    /**
+     * Checks that no directory was added to the subtrees before they were
+     * locked. Only the lists of the locked directories are read.
+     */
+    private boolean isSubtreesLocked(long mask) {
+        if (mask == ALL_STRIPES) {
+            return true;
+        }
+
+        Deque<FXPath> stack = new ArrayDeque<>();
+        Arrays.stream(subtrees).filter(Objects::nonNull).forEach(stack::push);
+
+        while (!stack.isEmpty()) {
+            var fxpath = stack.pop();
+
+            if ((mask & 1L << stripe(fxpath)) == 0) {
+                return false;
+            }
+
+            pushDirectories(fxpath, stack);
+        }
+
+        return true;
+    }
+
+    private static void pushDirectories(FXPath fxpath, Deque<FXPath> stack) {
+        // A copy, since the list can be changed when it is not locked.
+        for (Object child : fxpath.getPaths().toArray()) {
+            if (child != null && ((FXPath) child).isDirectory()) {
+                stack.push((FXPath) child);
+            }
+        }
+    }
+
+    private static int[] toStripes(long mask) {
+        int[] result = new int[Long.bitCount(mask)];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+        }
+
+        return result;
+    }
+
+    public void lock() {
+        while (true) {
+            long mask = getStripeMask();
+            stripes = toStripes(mask);
+
+            for (int stripe : stripes) {
+                LOCKS[stripe].lock();
+            }
+
+            if (isSubtreesLocked(mask)) {
+                return;
+            }
+
+            unlock();
+        }
+    }
+
+    public void lockInterruptibly() throws InterruptedException {
+        while (true) {
+            long mask = getStripeMask();
+            stripes = toStripes(mask);
+            int locked = 0;
+            try {
+                for (int stripe : stripes) {
+                    LOCKS[stripe].lockInterruptibly();
+                    locked++;
+                }
+            } catch (InterruptedException e) {
+                unlock(locked);
+                throw e;
+            }
+
+            if (isSubtreesLocked(mask)) {
+                return;
+            }
+
+            unlock();
+        }
+    }
+
+    public boolean tryLock() {
+        long mask = getStripeMask();
+        stripes = toStripes(mask);
+        int locked = 0;
+        for (int stripe : stripes) {
+            if (!LOCKS[stripe].tryLock()) {
+                unlock(locked);
+                return false;
+            }
+            locked++;
+        }
+
+        if (!isSubtreesLocked(mask)) {
+            unlock();
+            return false;
+        }
+
+        return true;
+    }
+
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+
+        while (true) {
+            long mask = getStripeMask();
+            stripes = toStripes(mask);
+            int locked = 0;
+            try {
+                for (int stripe : stripes) {
+                    if (!LOCKS[stripe].tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                        unlock(locked);
+                        return false;
+                    }
+                    locked++;
+                }
+            } catch (InterruptedException e) {
+                unlock(locked);
+                throw e;
+            }
+
+            if (isSubtreesLocked(mask)) {
+                return true;
+            }
+
+            unlock();
+        }
+    }
+
+    public void unlock() {
+        unlock(stripes.length);
+    }
+
+    private void unlock(int locked) {
+        for (int i = locked - 1; i >= 0; i--) {
+            LOCKS[stripes[i]].unlock();
+        }
+    }
+}
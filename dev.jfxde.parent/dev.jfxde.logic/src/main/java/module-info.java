@@ -8,6 +8,7 @@ module dev.jfxde.logic {
     requires org.eclipse.yasson;
     requires transitive dev.jfxde.jfxext;
     requires java.json.bind;
+    requires java.management;
 
     exports dev.jfxde.logic to  dev.jfxde.ui, dev.jfxde.sysapps;
     exports dev.jfxde.logic.data to  dev.jfxde.ui, dev.jfxde.sysapps;
@@ -0,0 +1,36 @@
+package dev.jfxde.logic.data;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class ContentIndexTest {
+
+    // The trigrams required by a pattern must be in every text it matches.
+    @ParameterizedTest
+    @CsvSource({
+            "'\\x41bc', Abc",
+            "'\\x{41}bc', Abc",
+            "'\\u0041bc', Abc",
+            "'\\0101bc', Abc",
+            "'\\cIabc', '\tabc'",
+            "'(?<n>a)\\k<n>bcd', aabcd",
+            "'\\p{Lu}bcd', Abcd",
+            "'\\pLbcd', Abcd",
+            "'(a)\\1bcd', aabcd",
+            "'foo\\x41bar', fooAbar"
+    })
+    public void getTrigrams(String regex, String text) {
+        var pattern = Pattern.compile(regex);
+        assertTrue(pattern.matcher(text).find());
+
+        var required = ContentIndex.getTrigrams(pattern);
+        var contained = ContentIndex.getTrigrams(Pattern.compile(text, Pattern.LITERAL));
+
+        assertTrue(Arrays.stream(required).allMatch(t -> Arrays.stream(contained).anyMatch(c -> c == t)), regex);
+    }
+}
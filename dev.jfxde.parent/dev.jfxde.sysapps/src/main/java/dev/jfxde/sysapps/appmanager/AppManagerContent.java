@@ -9,10 +9,13 @@ import dev.jfxde.jfx.util.FXResourceBundle;
 import dev.jfxde.logic.Sys;
 import dev.jfxde.logic.data.AppDescriptor;
 import dev.jfxde.logic.data.AppProviderDescriptor;
+import dev.jfxde.logic.data.FileOperation;
 import dev.jfxde.logic.data.PermissionDescriptor;
 import dev.jfxde.logic.data.TaskDescriptor;
 import dev.jfxde.ui.HyperlinkTableCell;
+import javafx.beans.InvalidationListener;
 import javafx.beans.binding.Bindings;
+import javafx.beans.binding.ObjectBinding;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.control.Button;
@@ -216,7 +219,11 @@ public class AppManagerContent extends TabPane {
 		stateColumn.textProperty().bind(FXResourceBundle.getBundle().getStringBinding("state"));
 		stateColumn.setCellValueFactory(c -> FXResourceBundle.getBundle().getStringBinding(c.getValue().getTask().stateProperty()));
 
-		table.getColumns().addAll(appColumn, titleColumn, progressColumn, stateColumn);
+		TableColumn<TaskDescriptor<?>, String> messageColumn = new TableColumn<>();
+		messageColumn.textProperty().bind(FXResourceBundle.getBundle().getStringBinding("message"));
+		messageColumn.setCellValueFactory(c -> c.getValue().getTask().messageProperty());
+
+		table.getColumns().addAll(appColumn, titleColumn, progressColumn, stateColumn, messageColumn);
 
 		table.setItems(Sys.tm().getTaskDescriptors());
 
@@ -245,7 +252,47 @@ public class AppManagerContent extends TabPane {
 			Sys.tm().removeAll(selectedItems);
 		});
 
-		TilePane buttonPane = LayoutUtils.createTilePane(List.of(cancel, remove));
+		Button pause = new Button();
+		pause.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+		pause.textProperty().bind(FXResourceBundle.getBundle().getStringBinding("pause"));
+
+		Button resume = new Button();
+		resume.setMaxSize(Double.MAX_VALUE, Double.MAX_VALUE);
+		resume.textProperty().bind(FXResourceBundle.getBundle().getStringBinding("resume"));
+
+		ObjectBinding<FileOperation> selectedOperation = Bindings.createObjectBinding(() -> {
+			ObservableList<TaskDescriptor<?>> selectedItems = table.getSelectionModel().getSelectedItems();
+
+			return selectedItems.size() == 1 && selectedItems.get(0).getTask() instanceof FileOperation
+					? (FileOperation) selectedItems.get(0).getTask()
+					: null;
+		}, table.getSelectionModel().getSelectedItems());
+
+		InvalidationListener operationListener = o -> {
+			FileOperation operation = selectedOperation.get();
+			pause.setDisable(operation == null || !operation.isRunning() || operation.isPaused());
+			resume.setDisable(operation == null || !operation.isRunning() || !operation.isPaused());
+		};
+
+		selectedOperation.addListener((v, o, n) -> {
+			if (o != null) {
+				o.pausedProperty().removeListener(operationListener);
+				o.runningProperty().removeListener(operationListener);
+			}
+
+			if (n != null) {
+				n.pausedProperty().addListener(operationListener);
+				n.runningProperty().addListener(operationListener);
+			}
+
+			operationListener.invalidated(v);
+		});
+		operationListener.invalidated(selectedOperation);
+
+		pause.setOnAction(e -> selectedOperation.get().pause());
+		resume.setOnAction(e -> selectedOperation.get().resume());
+
+		TilePane buttonPane = LayoutUtils.createTilePane(List.of(cancel, pause, resume, remove));
 
 		BorderPane borderPane = new BorderPane();
 		borderPane.setCenter(table);
@@ -0,0 +1,215 @@
+package dev.jfxde.sysapps.editor;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import dev.jfxde.jfx.application.XPlatform;
+import dev.jfxde.jfx.scene.control.InternalDialog;
+import dev.jfxde.jfx.util.FXResourceBundle;
+import dev.jfxde.logic.data.FXPath;
+import javafx.beans.InvalidationListener;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.Label;
+import javafx.scene.control.SplitPane;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableColumn.SortType;
+import javafx.scene.control.TableView;
+import javafx.scene.control.cell.ProgressBarTableCell;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+
+/**
+ * Shows the sizes of the files and directories of a directory, including
+ * subdirectories, in a table and a treemap.
+ */
+public class DiskUsageDialog extends InternalDialog {
+
+    private static final String[] UNITS = { "B", "KiB", "MiB", "GiB", "TiB" };
+
+    private FXPath dir;
+    private final LongProperty total = new SimpleLongProperty();
+    private final Label pathLabel = new Label();
+    private final Button upButton = new Button();
+    private final TableView<FXPath> table = new TableView<>();
+    private final TreemapPane treemap = new TreemapPane();
+    private final Button refreshButton = new Button();
+    private final Button closeButton = new Button();
+    private final InvalidationListener sizeListener = o -> sizeChanged();
+    private final ListChangeListener<FXPath> pathListener = c -> update(false);
+
+    public DiskUsageDialog(Node node, FXPath dir) {
+        super(node);
+
+        setGraphics();
+        setListeners();
+        open(dir, false);
+    }
+
+    private void setGraphics() {
+        setTitle(FXResourceBundle.getBundle().getString​("diskUsage"));
+
+        FXResourceBundle.getBundle().put(upButton.textProperty(), "up");
+        HBox pathBox = new HBox(5, upButton, pathLabel);
+        pathBox.setPadding(new Insets(5));
+
+        TableColumn<FXPath, String> nameColumn = new TableColumn<>();
+        FXResourceBundle.getBundle().put(nameColumn.textProperty(), "name");
+        nameColumn.setCellValueFactory(c -> c.getValue().nameProperty());
+        nameColumn.setPrefWidth(200);
+
+        TableColumn<FXPath, Number> sizeColumn = new TableColumn<>();
+        FXResourceBundle.getBundle().put(sizeColumn.textProperty(), "size");
+        sizeColumn.setCellValueFactory(c -> c.getValue().getBasicFileAttributes().sizeProperty());
+        sizeColumn.setCellFactory(c -> new TableCell<>() {
+            @Override
+            protected void updateItem(Number item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null || item.longValue() < 0 ? null : toSize(item.longValue()));
+            }
+        });
+        sizeColumn.getStyleClass().add("jd-table-column-numerical");
+        sizeColumn.setSortType(SortType.DESCENDING);
+        sizeColumn.setPrefWidth(100);
+
+        TableColumn<FXPath, Double> shareColumn = new TableColumn<>();
+        FXResourceBundle.getBundle().put(shareColumn.textProperty(), "share");
+        shareColumn.setCellValueFactory(c -> {
+            var size = c.getValue().getBasicFileAttributes().sizeProperty();
+
+            return Bindings.createObjectBinding(() -> total.get() > 0 ? Math.max(0, size.get()) / (double) total.get() : 0, size, total);
+        });
+        shareColumn.setCellFactory(ProgressBarTableCell.forTableColumn());
+        shareColumn.setSortable(false);
+
+        table.getColumns().addAll(List.of(nameColumn, sizeColumn, shareColumn));
+        table.getSortOrder().add(sizeColumn);
+
+        SplitPane splitPane = new SplitPane(table, treemap);
+        splitPane.setDividerPositions(0.4f);
+        splitPane.setPrefSize(800, 500);
+
+        FXResourceBundle.getBundle().put(refreshButton.textProperty(), "refresh");
+        FXResourceBundle.getBundle().put(closeButton.textProperty(), "close");
+        ButtonBar buttonBar = new ButtonBar();
+        buttonBar.setPadding(new Insets(5));
+        buttonBar.getButtons().addAll(refreshButton, closeButton);
+
+        BorderPane pane = new BorderPane();
+        pane.setTop(pathBox);
+        pane.setCenter(splitPane);
+        pane.setBottom(buttonBar);
+
+        setContent(pane);
+    }
+
+    private void setListeners() {
+        upButton.setOnAction(e -> open(dir.getParent(), false));
+        refreshButton.setOnAction(e -> update(true));
+        closeButton.setOnAction(e -> close());
+
+        table.setOnMouseClicked(e -> {
+            var path = table.getSelectionModel().getSelectedItem();
+
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2 && path != null && path.isDirectory()) {
+                open(path, false);
+            }
+        });
+
+        treemap.setOnOpen(p -> open(p, false));
+
+        parentProperty().addListener((v, o, n) -> {
+            if (n == null && dir != null) {
+                setDir(null);
+            }
+        });
+    }
+
+    private void open(FXPath newDir, boolean refresh) {
+        setDir(newDir);
+        var parent = newDir.getParent();
+        upButton.setDisable(parent == null || parent.getPath() == null);
+        pathLabel.setText(newDir.getPath().toString());
+        update(refresh);
+    }
+
+    // The directory is used so that it stays watched and its sizes up to date.
+    private void setDir(FXPath newDir) {
+        if (dir != null) {
+            dir.getPaths().removeListener(pathListener);
+            dir.release();
+        }
+
+        table.getItems().forEach(p -> {
+            p.getBasicFileAttributes().sizeProperty().removeListener(sizeListener);
+            p.stopSizeUpdates();
+        });
+        dir = newDir;
+
+        if (dir != null) {
+            dir.use();
+            dir.getPaths().addListener(pathListener);
+        }
+    }
+
+    private void update(boolean refresh) {
+        var current = dir;
+
+        if (current.isLeaf()) {
+            setPaths(current, List.of());
+            return;
+        }
+
+        current.load(paths -> {
+            List<FXPath> children = new ArrayList<>(paths);
+            var sizes = children.stream().map(p -> p.computeSize(refresh)).toArray(CompletableFuture[]::new);
+
+            CompletableFuture.allOf(sizes).thenRun(() -> XPlatform.runFX(() -> setPaths(current, children)));
+        });
+    }
+
+    private void setPaths(FXPath current, List<FXPath> paths) {
+        if (current != dir) {
+            paths.forEach(FXPath::stopSizeUpdates);
+            return;
+        }
+
+        table.getItems().forEach(p -> p.getBasicFileAttributes().sizeProperty().removeListener(sizeListener));
+        table.getItems().setAll(paths);
+        table.getItems().forEach(p -> p.getBasicFileAttributes().sizeProperty().addListener(sizeListener));
+        table.sort();
+        treemap.setPaths(paths);
+        sizeChanged();
+    }
+
+    private void sizeChanged() {
+        total.set(table.getItems().stream().mapToLong(TreemapPane::getSize).sum());
+        pathLabel.setText(dir.getPath() + " (" + toSize(total.get()) + ")");
+        treemap.requestLayout();
+    }
+
+    static String toSize(long size) {
+        double value = size;
+        int unit = 0;
+
+        while (value >= 1024 && unit < UNITS.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+
+        NumberFormat format = NumberFormat.getInstance();
+        format.setMaximumFractionDigits(unit == 0 ? 0 : 1);
+
+        return format.format(value) + " " + UNITS[unit];
+    }
+}
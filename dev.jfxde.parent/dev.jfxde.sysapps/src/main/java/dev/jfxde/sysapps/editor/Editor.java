@@ -1,19 +1,32 @@
 package dev.jfxde.sysapps.editor;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.controlsfx.control.action.ActionUtils;
 import org.fxmisc.flowless.VirtualizedScrollPane;
 import org.fxmisc.richtext.CodeArea;
 
+import dev.jfxde.api.AppContext;
 import dev.jfxde.fxmisc.richtext.CodeAreaWrappers;
 import dev.jfxde.fxmisc.richtext.ContextMenuBuilder;
 import dev.jfxde.fxmisc.richtext.ParagraphGraphicFactory;
+import dev.jfxde.j.nio.file.ContentDetector;
 import dev.jfxde.j.util.LU;
 import dev.jfxde.j.util.search.SearchResult;
 import dev.jfxde.jfx.application.XPlatform;
+import dev.jfxde.jfx.scene.control.AlertBuilder;
+import dev.jfxde.jfx.util.FXResourceBundle;
 import dev.jfxde.logic.data.FXFiles;
 import dev.jfxde.logic.data.FXPath;
 import dev.jfxde.logic.data.FilePosition;
@@ -23,14 +36,23 @@ import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.beans.property.ReadOnlyStringProperty;
 import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.ListChangeListener.Change;
+import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Label;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.shape.Rectangle;
+import javafx.util.Pair;
 
 public class Editor extends BorderPane {
 
+    private static final Logger LOGGER = Logger.getLogger(Editor.class.getName());
+    private static final String HIGHLIGHTING_QUEUE = "highlighting";
+
     private FilePosition filePosition;
     private FXPath path;
+    // The directory watched for changes of the file.
+    private FXPath dir;
+    // The charset the file is saved in, the one it was loaded from.
+    private Charset charset = StandardCharsets.UTF_8;
     private final ReadOnlyBooleanWrapper edited = new ReadOnlyBooleanWrapper();
     private final ReadOnlyBooleanWrapper modified = new ReadOnlyBooleanWrapper();
     private final ReadOnlyBooleanWrapper deleted = new ReadOnlyBooleanWrapper();
@@ -42,7 +64,7 @@ public class Editor extends BorderPane {
     private final EditorSideBar sideBar = new EditorSideBar(area);
     private CodeAreaWrappers codeAreaWrappers;
 
-    public Editor(FilePosition filePosition, EditorActions actions) {
+    public Editor(AppContext context, FilePosition filePosition, EditorActions actions) {
         setFilePosition(filePosition);
 
         title.bind(Bindings.createStringBinding(() -> getPath().getPath().toString(), getPath().pathProperty()));
@@ -66,7 +88,7 @@ public class Editor extends BorderPane {
 
         codeAreaWrappers = CodeAreaWrappers.get(area, path.getPath())
                 .style()
-                .highlighting()
+                .highlighting(t -> context.tc().executeSequentially(HIGHLIGHTING_QUEUE, t))
                 .indentation()
                 .find();
 
@@ -75,6 +97,11 @@ public class Editor extends BorderPane {
 
         setListeners();
 
+        dir = path.getParent();
+        if (dir != null) {
+            dir.use();
+        }
+
         load();
     }
 
@@ -246,10 +273,11 @@ public class Editor extends BorderPane {
     }
 
     void load() {
-        CompletableFuture.supplyAsync(() -> LU.of(() -> Files.readString(path.getPath())))
-                .thenAccept(s -> XPlatform.runFX(() -> {
+        CompletableFuture.supplyAsync(() -> LU.of(() -> read(path.getPath())))
+                .thenAccept(p -> XPlatform.runFX(() -> {
+                    charset = p.getKey();
                     area.clear();
-                    area.replaceText(0, 0, s);
+                    area.replaceText(0, 0, p.getValue());
 
                     area.getUndoManager().forgetHistory();
 
@@ -260,12 +288,66 @@ public class Editor extends BorderPane {
                 }));
     }
 
+    private static Pair<Charset, String> read(Path file) throws IOException {
+        Charset charset = ContentDetector.detect(file).getCharset();
+        byte[] bytes = Files.readAllBytes(file);
+
+        try {
+            String text = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString();
+
+            return new Pair<>(charset, text);
+        } catch (CharacterCodingException e) {
+            // The charset is detected from the first block only. ISO-8859-1 maps
+            // every byte, so the file is saved back unchanged.
+            return new Pair<>(StandardCharsets.ISO_8859_1, new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+    }
+
     void save() {
         if (isChanged()) {
-            FXFiles.save(path, area.getText()).thenRun(() -> XPlatform.runFX(() -> unchange()));
+            String text = area.getText();
+
+            if (charset.newEncoder().canEncode(text)) {
+                save(text);
+            } else {
+                AlertBuilder.get(this, AlertType.CONFIRMATION)
+                        .title(FXResourceBundle.getBundle().getString​("confirmation"))
+                        .headerText(FXResourceBundle.getBundle().getString​("unmappableCharacters", path.getName(), charset.name()))
+                        .contentText(FXResourceBundle.getBundle().getString​("saveInUtf8"))
+                        .ok(() -> {
+                            charset = StandardCharsets.UTF_8;
+                            save(area.getText());
+                        })
+                        .show();
+            }
         }
     }
 
+    private void save(String text) {
+        FXFiles.save(path, text, charset).whenComplete((v, e) -> XPlatform.runFX(() -> {
+            if (e == null) {
+                unchange();
+            } else {
+                Throwable cause = e;
+                while (cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+
+                LOGGER.log(Level.INFO, cause.getMessage(), cause);
+
+                AlertBuilder.get(this, AlertType.ERROR)
+                        .title(FXResourceBundle.getBundle().getString​("error"))
+                        .headerText(FXResourceBundle.getBundle().getString​("fileNotSaved", path.getName()))
+                        .contentText(cause.toString())
+                        .show();
+            }
+        }));
+    }
+
     void goToLine(int line) {
 
         line = Math.min(Math.max(line, 1), getArea().getParagraphs().size());
@@ -275,5 +357,9 @@ public class Editor extends BorderPane {
 
     void dispose() {
         area.dispose();
+
+        if (dir != null) {
+            dir.release();
+        }
     }
 }
@@ -16,6 +16,11 @@ public class EditorApp implements SystemApp {
         return content.init(context);
     }
 
+    @Override
+    public void stop() throws Exception {
+        content.stop();
+    }
+
     @Override
     public ReadOnlyBooleanProperty stoppableProperty() {
         return content.stoppableProperty();
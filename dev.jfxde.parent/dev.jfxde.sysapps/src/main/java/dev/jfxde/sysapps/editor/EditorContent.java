@@ -39,6 +39,7 @@ public class EditorContent extends BorderPane {
         FXResourceBundle.getBundle().put(roots.nameProperty(), "roots");
 
         favorites = FXPath.getPseudoPath(favoritePaths);
+        favorites.getPaths().forEach(FXPath::use);
         FXResourceBundle.getBundle().put(favorites.nameProperty(), "favorites");
 
         FXPath root = FXPath.getPseudoPath(roots, favorites);
@@ -47,9 +48,10 @@ public class EditorContent extends BorderPane {
 
         fileTreeBox = new FileTreeBox(rootItem, favorites, p -> editorPane.open(p));
         fileTreeBox.setOnNewProject((k,p) -> Project.get(k).create(p.getPath()));
+        fileTreeBox.setTaskController(context.tc());
 
         editorActions = new EditorActions(this);
-        editorPane = new EditorPane(editorActions);
+        editorPane = new EditorPane(context, editorActions);
         editorActions.init();
         editorBar = new EditorBar(editorActions);
 
@@ -71,12 +73,19 @@ public class EditorContent extends BorderPane {
         favorites.getPaths().addListener((Change<? extends FXPath> c) -> {
 
             while (c.next()) {
+                c.getRemoved().forEach(FXPath::release);
+                c.getAddedSubList().forEach(FXPath::use);
                 var favorites = c.getList().stream().map(p -> p.getPath().toString()).collect(Collectors.toList());
                 context.dc().toJson(favorites, FAVORITES);
             }
         });
     }
 
+    void stop() {
+        favorites.getPaths().forEach(FXPath::release);
+        rootItem.dispose();
+    }
+
     ReadOnlyBooleanProperty stoppableProperty() {
         return stoppable.getReadOnlyProperty();
     }
@@ -2,6 +2,7 @@ package dev.jfxde.sysapps.editor;
 
 import java.util.List;
 
+import dev.jfxde.api.AppContext;
 import dev.jfxde.jfx.application.XPlatform;
 import dev.jfxde.jfx.util.FXResourceBundle;
 import dev.jfxde.logic.data.FXPath;
@@ -31,6 +32,7 @@ import javafx.util.Duration;
 
 public class EditorPane extends StackPane {
 
+    private AppContext context;
     private EditorActions actions;
     private TabPane tabPane = new TabPane();
     private final ObservableList<Editor> editors = FXCollections
@@ -40,7 +42,8 @@ public class EditorPane extends StackPane {
     private final ReadOnlyBooleanWrapper changed = new ReadOnlyBooleanWrapper();
     private FindDialog findDialog;
 
-    public EditorPane(EditorActions actions) {
+    public EditorPane(AppContext context, EditorActions actions) {
+        this.context = context;
         this.actions = actions;
         tabPane.setTabClosingPolicy(TabClosingPolicy.ALL_TABS);
         tabPane.setTabDragPolicy(TabDragPolicy.REORDER);
@@ -135,7 +138,7 @@ public class EditorPane extends StackPane {
 
     private Tab createEditorTab(FilePosition filePosition) {
         Tab tab = new Tab();
-        Editor editor = new Editor(filePosition, actions);
+        Editor editor = new Editor(context, filePosition, actions);
         tab.setContent(editor);
 
         tab.closableProperty().bind(editor.changedProperty().not());
@@ -6,6 +6,7 @@ import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import dev.jfxde.api.TaskController;
 import dev.jfxde.jfx.application.XPlatform;
 import dev.jfxde.jfx.scene.control.AlertBuilder;
 import dev.jfxde.jfx.scene.control.TreeViewUtils;
@@ -55,6 +56,7 @@ public class FileTreeBox extends VBox {
     private Consumer<FXPath> onDeleted;
     private ContextMenu fileContextMenu;
     private BiConsumer<String, FXPath> onNewProject;
+    private TaskController taskController;
 
     public FileTreeBox(PathTreeItem root, FXPath favorites, Consumer<List<FilePosition>> fileSelectedHandler) {
         this.root = root;
@@ -74,6 +76,10 @@ public class FileTreeBox extends VBox {
         this.onNewProject = onNewProject;
     }
 
+    void setTaskController(TaskController taskController) {
+        this.taskController = taskController;
+    }
+
     private Consumer<List<FilePosition>> getFileSelectedHandler() {
         return fileSelectedHandler.get();
     }
@@ -88,7 +94,7 @@ public class FileTreeBox extends VBox {
         fileTreeView.setShowRoot(false);
         fileTreeView.setMaxHeight(Double.MAX_VALUE);
         fileTreeView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
-        fileTreeView.setCellFactory(TextFieldTreeCell.forTreeView(new PathDescriptorStringConverter()));
+        fileTreeView.setCellFactory(PathTreeItem.forTreeView(TextFieldTreeCell.forTreeView(new PathDescriptorStringConverter())));
 
         VBox.setVgrow(fileTreeView, Priority.ALWAYS);
 
@@ -133,10 +139,10 @@ public class FileTreeBox extends VBox {
 
             while (c.next()) {
                 if (c.wasAdded()) {
-                    c.getAddedSubList().forEach(i -> i.getGraphic().setDisable(true));
+                    c.getAddedSubList().forEach(i -> ((PathTreeItem) i).createGraphic().setDisable(true));
                 }
                 if (c.wasRemoved()) {
-                    c.getRemoved().forEach(i -> i.getGraphic().setDisable(false));
+                    c.getRemoved().forEach(i -> ((PathTreeItem) i).createGraphic().setDisable(false));
                 }
             }
         });
@@ -193,6 +199,7 @@ public class FileTreeBox extends VBox {
     private BooleanProperty dirModifiable = new SimpleBooleanProperty();
     private BooleanProperty pathModifiable = new SimpleBooleanProperty();
     private BooleanProperty refreshable = new SimpleBooleanProperty();
+    private BooleanProperty dirSelected = new SimpleBooleanProperty();
 
     private ContextMenu getFileContextMenu() {
         if (fileContextMenu == null) {
@@ -207,6 +214,7 @@ public class FileTreeBox extends VBox {
         dirModifiable.set(selectionSize == 1 && dir.isReadable() && dir.isExecutable() && !dir.isReadOnly());
         pathModifiable.set(selectionSize == 1 && path.isWritable() && !path.isReadOnly());
         refreshable.set(selectionSize == 1 && !path.isPseudoPath() && path.isLoaded());
+        dirSelected.set(selectionSize == 1 && !path.isPseudoPath() && path.isDirectory() && path.isReadable());
 
         return fileContextMenu;
     }
@@ -218,6 +226,14 @@ public class FileTreeBox extends VBox {
         searchFile.disableProperty().bind(Bindings.isEmpty(readableSelectedItems));
         searchFile.setOnAction(e -> showSearchFileDialog());
 
+        MenuItem diskUsage = new MenuItem();
+        FXResourceBundle.getBundle().put(diskUsage.textProperty(), "diskUsage");
+        diskUsage.disableProperty().bind(dirSelected.not());
+        diskUsage.setOnAction(e -> {
+            var item = fileTreeView.getSelectionModel().getSelectedItem();
+            new DiskUsageDialog(this, item.getValue()).show();
+        });
+
         Menu newProject = new Menu();
         FXResourceBundle.getBundle().put(newProject.textProperty(), "newProject");
         newProject.disableProperty().bind(dirModifiable.not());
@@ -281,11 +297,11 @@ public class FileTreeBox extends VBox {
             if (cutItems.isEmpty()) {
                 var pds = copyItems.stream().map(TreeItem::getValue).collect(Collectors.toList());
                 copyItems.clear();
-                FXFiles.copy(pds, parentPahDescriptor);
+                taskController.execute(FXFiles.copy(pds, parentPahDescriptor));
             } else {
                 var pds = cutItems.stream().map(TreeItem::getValue).collect(Collectors.toList());
                 cutItems.clear();
-                FXFiles.move(pds, parentPahDescriptor);
+                taskController.execute(FXFiles.move(pds, parentPahDescriptor));
             }
         });
 
@@ -344,7 +360,7 @@ public class FileTreeBox extends VBox {
             var alert = AlertBuilder.get(this, AlertType.CONFIRMATION)
                     .title(FXResourceBundle.getBundle().getString​("confirmation"))
                     .headerText(FXResourceBundle.getBundle().getString​("areYouSureDeleteSelectedItems"))
-                    .ok(() -> FXFiles.delete(pds));
+                    .ok(() -> taskController.execute(FXFiles.delete(pds)));
 
             if (!notToBeDeleted.isEmpty()) {
                 alert.contentText(FXResourceBundle.getBundle().getString​("itemsBeingModified"))
@@ -354,7 +370,7 @@ public class FileTreeBox extends VBox {
             alert.show();
         });
 
-        ContextMenu menu = new ContextMenu(searchFile, new SeparatorMenuItem(), newProject, newDirectory, newFile, rename,
+        ContextMenu menu = new ContextMenu(searchFile, diskUsage, new SeparatorMenuItem(), newProject, newDirectory, newFile, rename,
                 new SeparatorMenuItem(), cut, copy, paste, new SeparatorMenuItem(),
                 addFavorite, removeFavorite, new SeparatorMenuItem(), refresh,
                 new SeparatorMenuItem(), delete);
@@ -1,16 +1,21 @@
 package dev.jfxde.sysapps.editor;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import dev.jfxde.jfx.application.XPlatform;
 import dev.jfxde.jfx.scene.control.AutoCompleteField;
 import dev.jfxde.jfx.scene.control.InternalDialog;
 import dev.jfxde.jfx.util.FXResourceBundle;
+import dev.jfxde.logic.Sys;
 import dev.jfxde.logic.data.FXFiles;
+import dev.jfxde.logic.data.FXPath;
 import dev.jfxde.logic.data.FilePosition;
+import dev.jfxde.logic.data.PathFilePosition;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.ObjectProperty;
 import javafx.collections.ListChangeListener;
@@ -22,6 +27,7 @@ import javafx.scene.control.Button;
 import javafx.scene.control.ButtonBar;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.TreeCell;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 import javafx.scene.input.MouseButton;
@@ -87,6 +93,13 @@ public class SearchFileDialog extends InternalDialog {
         filePointerTree = new TreeView<>(root);
         filePointerTree.setPrefHeight(200);
         filePointerTree.setShowRoot(false);
+        filePointerTree.setCellFactory(v -> new TreeCell<>() {
+            @Override
+            protected void updateItem(FilePosition item, boolean empty) {
+                super.updateItem(item, empty);
+                setText(empty || item == null ? null : toText(item));
+            }
+        });
 
         searchButton.disableProperty().bind(Bindings.createBooleanBinding(() -> pathField.getText().isBlank(),
                 pathField.textProperty())
@@ -127,6 +140,7 @@ public class SearchFileDialog extends InternalDialog {
                 textField.setText(n.getTextPattern());
                 root.getChildren().clear();
                 setItems(n.getResult());
+                buildIndex();
             } else {
                 search = null;
                 pathField.setText("");
@@ -157,6 +171,12 @@ public class SearchFileDialog extends InternalDialog {
         });
     }
 
+    private static String toText(FilePosition position) {
+        return position instanceof PathFilePosition && ((PathFilePosition) position).isTimedOut()
+                ? position + " (" + FXResourceBundle.getBundle().getString​("timedOut") + ")"
+                : position.toString();
+    }
+
     private void setItems(List<? extends FilePosition> positions) {
         positions.forEach(p -> {
             TreeItem<FilePosition> item = new TreeItem<>(p);
@@ -181,16 +201,28 @@ public class SearchFileDialog extends InternalDialog {
 
             root.getChildren().clear();
             stop = new AtomicBoolean();
-            FXFiles.search(search.getPaths(), pathField.getText(), getPattern(), this::found, stop)
+            var pattern = getPattern();
+            var candidates = Sys.fm().getContentIndex().query(pattern);
+            FXFiles.search(search.getPaths(), pathField.getText(), pattern, candidates, this::found, stop)
                     .thenRun(() -> XPlatform.runFX(() -> {
                         FXResourceBundle.getBundle().put(searchButton.textProperty(), "search");
                         searching = false;
                     }));
             searching = true;
             FXResourceBundle.getBundle().put(searchButton.textProperty(), "stop");
+            buildIndex();
         }
     }
 
+    private void buildIndex() {
+        var roots = search.getPaths().stream()
+                .map(FXPath::getPath)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        Sys.fm().getContentIndex().build(roots);
+    }
+
     private Pattern getPattern() {
 
         String regex = textField.getText();
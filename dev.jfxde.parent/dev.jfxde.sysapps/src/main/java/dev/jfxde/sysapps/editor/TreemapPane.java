@@ -0,0 +1,162 @@
+package dev.jfxde.sysapps.editor;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import dev.jfxde.logic.data.FXPath;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.Border;
+import javafx.scene.layout.BorderStroke;
+import javafx.scene.layout.BorderStrokeStyle;
+import javafx.scene.layout.BorderWidths;
+import javafx.scene.layout.CornerRadii;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+/**
+ * Shows paths as rectangles with areas proportional to their sizes, laid out
+ * by the squarified treemap algorithm.
+ */
+class TreemapPane extends Pane {
+
+    private static final Color DIRECTORY_COLOR = Color.STEELBLUE;
+
+    private final Map<FXPath, Label> cells = new HashMap<>();
+    private Consumer<FXPath> onOpen = p -> {};
+
+    void setPaths(List<FXPath> paths) {
+        cells.clear();
+        paths.forEach(p -> cells.put(p, createCell(p)));
+        getChildren().setAll(cells.values());
+        requestLayout();
+    }
+
+    void setOnOpen(Consumer<FXPath> onOpen) {
+        this.onOpen = onOpen;
+    }
+
+    private Label createCell(FXPath path) {
+        Label cell = new Label(path.getName());
+        cell.setMinSize(0, 0);
+        cell.setPadding(new Insets(2));
+        cell.setAlignment(Pos.TOP_LEFT);
+        cell.setBackground(new Background(new BackgroundFill(getColor(path), CornerRadii.EMPTY, Insets.EMPTY)));
+        cell.setBorder(new Border(new BorderStroke(Color.WHITE, BorderStrokeStyle.SOLID, CornerRadii.EMPTY, BorderWidths.DEFAULT)));
+        cell.setTooltip(new Tooltip());
+        cell.setOnMouseClicked(e -> {
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2 && path.isDirectory()) {
+                onOpen.accept(path);
+            }
+        });
+
+        return cell;
+    }
+
+    // Directories have one color and files a color per extension.
+    private static Color getColor(FXPath path) {
+        if (path.isDirectory()) {
+            return DIRECTORY_COLOR;
+        }
+
+        String name = path.getName();
+        int i = name.lastIndexOf('.');
+        String extension = i > 0 ? name.substring(i + 1).toLowerCase(Locale.ROOT) : "";
+
+        return Color.hsb(Math.floorMod(extension.hashCode(), 360), 0.4, 0.9);
+    }
+
+    static long getSize(FXPath path) {
+        return Math.max(0, path.getBasicFileAttributes().sizeProperty().get());
+    }
+
+    @Override
+    protected void layoutChildren() {
+        cells.values().forEach(c -> c.setVisible(false));
+
+        List<FXPath> paths = cells.keySet().stream()
+                .filter(p -> getSize(p) > 0)
+                .sorted(Comparator.comparingLong(TreemapPane::getSize).reversed())
+                .collect(Collectors.toList());
+
+        Insets insets = getInsets();
+        double x = insets.getLeft();
+        double y = insets.getTop();
+        double width = getWidth() - insets.getLeft() - insets.getRight();
+        double height = getHeight() - insets.getTop() - insets.getBottom();
+        double total = paths.stream().mapToLong(TreemapPane::getSize).sum();
+
+        if (total == 0 || width <= 0 || height <= 0) {
+            return;
+        }
+
+        double scale = width * height / total;
+        double[] areas = paths.stream().mapToDouble(p -> getSize(p) * scale).toArray();
+        int i = 0;
+
+        while (i < areas.length) {
+            // A row along the shorter side is extended while its worst aspect ratio improves.
+            double side = Math.min(width, height);
+            double rowArea = areas[i];
+            double worst = getWorstRatio(rowArea, areas[i], areas[i], side);
+            int end = i + 1;
+
+            while (end < areas.length) {
+                double ratio = getWorstRatio(rowArea + areas[end], areas[i], areas[end], side);
+
+                if (ratio > worst) {
+                    break;
+                }
+
+                rowArea += areas[end];
+                worst = ratio;
+                end++;
+            }
+
+            double thickness = rowArea / side;
+            double offset = 0;
+
+            for (int j = i; j < end; j++) {
+                double length = areas[j] / thickness;
+                Label cell = cells.get(paths.get(j));
+
+                if (width >= height) {
+                    cell.resizeRelocate(x, y + offset, thickness, length);
+                } else {
+                    cell.resizeRelocate(x + offset, y, length, thickness);
+                }
+
+                cell.getTooltip().setText(paths.get(j).getName() + "\n" + DiskUsageDialog.toSize(getSize(paths.get(j))));
+                cell.setVisible(true);
+                offset += length;
+            }
+
+            if (width >= height) {
+                x += thickness;
+                width -= thickness;
+            } else {
+                y += thickness;
+                height -= thickness;
+            }
+
+            i = end;
+        }
+    }
+
+    private static double getWorstRatio(double rowArea, double maxArea, double minArea, double side) {
+        double sideSquare = side * side;
+        double rowAreaSquare = rowArea * rowArea;
+
+        return Math.max(sideSquare * maxArea / rowAreaSquare, rowAreaSquare / (sideSquare * minArea));
+    }
+}
@@ -17,6 +17,7 @@ import javafx.scene.layout.BorderPane;
 public class JShellContent extends BorderPane {
 
     private static final String HISTORY_FILE_NAME = "history.json";
+    private static final String HIGHLIGHTING_QUEUE = "highlighting";
 
     private AppContext context;
     private SplitConsoleView consoleView;
@@ -69,7 +70,7 @@ public class JShellContent extends BorderPane {
 
         CodeAreaWrappers.get(consoleView.getInputArea(), "java")
                 .style()
-                .highlighting(consoleView.getConsoleModel().getReadFromPipe())
+                .highlighting(consoleView.getConsoleModel().getReadFromPipe(), t -> context.tc().executeSequentially(HIGHLIGHTING_QUEUE, t))
                 .completion(this::codeCompletion, completion::loadDocumentation)
                 .indentation();
 
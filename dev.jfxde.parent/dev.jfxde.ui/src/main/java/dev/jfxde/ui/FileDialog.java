@@ -25,7 +25,6 @@ import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonBar;
 import javafx.scene.control.ContextMenu;
-import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
 import javafx.scene.control.MenuItem;
 import javafx.scene.control.SelectionMode;
@@ -35,7 +34,6 @@ import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
-import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
@@ -57,7 +55,7 @@ public class FileDialog extends InternalDialog {
     private Set<TreeItem<FXPath>> selection = new HashSet<>();
     private Consumer<List<Path>> selectionConsumer;
 
-    private TreeItem<FXPath> root;
+    private PathTreeItem root;
     private boolean dirOnly;
     private boolean allPaths = true;
     private SortedList<TreeItem<FXPath>> sortedAllChildren;
@@ -86,6 +84,7 @@ public class FileDialog extends InternalDialog {
 
         fileTree = new TreeView<>(root);
         fileTree.setShowRoot(false);
+        fileTree.setCellFactory(PathTreeItem.forTreeView());
         fileTree.setPrefHeight(height);
 
         TableColumn<TreeItem<FXPath>, StringProperty> nameColumn = new TableColumn<>();
@@ -109,7 +108,7 @@ public class FileDialog extends InternalDialog {
                         var treeItem = row == null ? null : row.getItem();
 
                         if (treeItem != null) {
-                            setGraphic(new Label("", new ImageView(((ImageView) ((Label)treeItem.getGraphic()).getGraphic()).getImage())));
+                            setGraphic(treeItem.getValue().getGraphic());
                         }
                     }
                 }
@@ -232,6 +231,12 @@ public class FileDialog extends InternalDialog {
         });
 
         cancelButton.setOnAction(e -> close());
+
+        parentProperty().addListener((v, o, n) -> {
+            if (n == null) {
+                root.dispose();
+            }
+        });
     }
 
     private ObservableList<TreeItem<FXPath>> getTableItems(TreeItem<FXPath> treeItem) {
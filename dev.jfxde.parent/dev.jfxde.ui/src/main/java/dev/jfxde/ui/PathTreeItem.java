@@ -1,8 +1,14 @@
 package dev.jfxde.ui;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import dev.jfxde.jfx.application.XPlatform;
 import dev.jfxde.logic.data.FXPath;
@@ -18,14 +24,31 @@ import javafx.collections.ListChangeListener.Change;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
+import javafx.event.Event;
+import javafx.scene.Node;
+import javafx.scene.control.TreeCell;
 import javafx.scene.control.TreeItem;
+import javafx.scene.control.TreeItem.TreeModificationEvent;
+import javafx.scene.control.TreeView;
+import javafx.util.Callback;
 
 public class PathTreeItem extends TreeItem<FXPath> {
 
+    // Directories with more children are populated in batches, one time slice per event.
+    private static final int LARGE_DIRECTORY = 1000;
+    private static final int BATCH_SIZE = 500;
+    private static final long TIME_SLICE = 10_000_000;
+
     private boolean dirOnly;
-    private ObservableList<TreeItem<FXPath>> allChildren = FXCollections.observableArrayList((i) -> new Observable[] { i.getValue().nameProperty() });
+    // Paths waiting to be added as children of a large directory.
+    private final Deque<FXPath> pending = new ArrayDeque<>();
+    private ObservableList<TreeItem<FXPath>> allChildren = FXCollections.observableArrayList((i) -> new Observable[] { i.getValue().nameProperty(),
+            i.getValue().leavesSetProperty() });
     private ObservableList<TreeItem<FXPath>> sortedChildren;
     private boolean loading;
+    // Whether the path is in use, i.e. the item and all its ancestors are expanded.
+    private boolean used;
+    private boolean disposed;
     private BooleanProperty loaded = new SimpleBooleanProperty();
 
     private ListChangeListener<FXPath> pathListener = (Change<? extends FXPath> c) -> {
@@ -47,7 +70,18 @@ public class PathTreeItem extends TreeItem<FXPath> {
     public PathTreeItem(FXPath path, boolean dirOnly) {
         super(path);
         this.dirOnly = dirOnly;
-        setGraphic(path.getGraphic());
+
+        expandedProperty().addListener((v, o, n) -> updateUsed());
+
+        // The cells are updated when the leaves of the children are set in the background.
+        allChildren.addListener((Change<? extends TreeItem<FXPath>> c) -> {
+            while (c.next()) {
+                if (c.wasUpdated()) {
+                    c.getList().subList(c.getFrom(), c.getTo())
+                            .forEach(i -> Event.fireEvent(i, new TreeModificationEvent<>(TreeItem.valueChangedEvent(), i, i.getValue())));
+                }
+            }
+        });
 
         if (isLoaded()) {
             Platform.runLater(() -> {
@@ -65,26 +99,117 @@ public class PathTreeItem extends TreeItem<FXPath> {
         getValue().getPaths().addListener(pathListener);
     }
 
+    /**
+     * Returns a cell factory which creates the graphics of the items only
+     * when they are shown in the cells created by the given factory.
+     */
+    public static Callback<TreeView<FXPath>, TreeCell<FXPath>> forTreeView(Callback<TreeView<FXPath>, TreeCell<FXPath>> cellFactory) {
+        return v -> {
+            TreeCell<FXPath> cell = cellFactory.call(v);
+            cell.treeItemProperty().addListener((o, ov, n) -> {
+                if (n instanceof PathTreeItem) {
+                    ((PathTreeItem) n).createGraphic();
+                }
+            });
+
+            return cell;
+        };
+    }
+
+    /**
+     * Returns a cell factory of cells showing the name and the graphic of
+     * the items which are created only when they are shown.
+     */
+    public static Callback<TreeView<FXPath>, TreeCell<FXPath>> forTreeView() {
+        return forTreeView(v -> new TreeCell<>() {
+            @Override
+            protected void updateItem(FXPath item, boolean empty) {
+                super.updateItem(item, empty);
+
+                if (empty || item == null) {
+                    setText(null);
+                    setGraphic(null);
+                } else {
+                    setText(item.toString());
+                    setGraphic(getTreeItem() == null ? null : getTreeItem().getGraphic());
+                }
+            }
+        });
+    }
+
+    public Node createGraphic() {
+        if (getGraphic() == null) {
+            setGraphic(getValue().getGraphic());
+        }
+
+        return getGraphic();
+    }
+
     private void load(List<? extends FXPath> paths) {
+        // Sorted before they are added so that the sorted children are only appended.
+        List<FXPath> sortedPaths = new ArrayList<>(paths);
+        sortedPaths.sort(Comparator.naturalOrder());
+
         XPlatform.runFX(() -> {
-            addItems(paths);
             setListeners();
-            loading = false;
-            setLoaded(true);
+            addItems(sortedPaths);
+
+            if (pending.isEmpty()) {
+                loaded();
+            }
         });
     }
 
+    private void loaded() {
+        loading = false;
+        setLoaded(true);
+    }
+
     private void addItems(List<? extends FXPath> paths) {
-        XPlatform.runFX(() -> paths.stream()
-                .map(p -> new PathTreeItem(p, dirOnly))
-                .forEach(i -> allChildren.add(i)));
+        XPlatform.runFX(() -> {
+            if (pending.isEmpty() && paths.size() < LARGE_DIRECTORY) {
+                allChildren.addAll(paths.stream()
+                        .map(p -> new PathTreeItem(p, dirOnly))
+                        .collect(Collectors.toList()));
+            } else {
+                boolean adding = !pending.isEmpty();
+                pending.addAll(paths);
+
+                if (!adding) {
+                    Platform.runLater(this::addPending);
+                }
+            }
+        });
+    }
+
+    private void addPending() {
+        long start = System.nanoTime();
+
+        while (!pending.isEmpty() && System.nanoTime() - start < TIME_SLICE) {
+            List<TreeItem<FXPath>> items = new ArrayList<>(BATCH_SIZE);
+
+            while (!pending.isEmpty() && items.size() < BATCH_SIZE) {
+                items.add(new PathTreeItem(pending.poll(), dirOnly));
+            }
+
+            allChildren.addAll(items);
+        }
+
+        if (!pending.isEmpty()) {
+            // Lets the pulse render the added children before the next batch.
+            Platform.runLater(this::addPending);
+        } else if (loading) {
+            loaded();
+        }
     }
 
     private void removeItems(List<? extends FXPath> paths) {
         XPlatform.runFX(() -> {
-            allChildren.removeIf(i -> ((PathTreeItem) i).remove(paths));
+            var removed = new HashSet<FXPath>(paths);
+            pending.removeAll(removed);
+            allChildren.removeIf(i -> ((PathTreeItem) i).remove(removed));
 
-            if (super.getChildren().isEmpty() && getParent() != null) {
+            if (super.getChildren().isEmpty() && pending.isEmpty() && getParent() != null) {
                 setExpanded(false);
                 loading = false;
                 setLoaded(false);
@@ -93,15 +218,47 @@ public class PathTreeItem extends TreeItem<FXPath> {
         });
     }
 
-    private boolean remove(List<? extends FXPath> paths) {
+    private boolean remove(Collection<? extends FXPath> paths) {
         boolean remove = paths.contains(getValue());
         if (remove) {
-            getValue().getPaths().removeListener(pathListener);
+            dispose();
         }
 
         return remove;
     }
 
+    private void updateUsed() {
+        var parent = getParent();
+        setUsed(!disposed && isExpanded() && (parent == null || ((PathTreeItem) parent).used));
+    }
+
+    private void setUsed(boolean value) {
+        if (used == value) {
+            return;
+        }
+
+        used = value;
+
+        if (value) {
+            getValue().use();
+        } else {
+            getValue().release();
+        }
+
+        allChildren.forEach(i -> ((PathTreeItem) i).updateUsed());
+    }
+
+    /**
+     * Releases the paths of the item and its descendants when the item is
+     * removed or its tree is no longer shown.
+     */
+    public void dispose() {
+        disposed = true;
+        getValue().getPaths().removeListener(pathListener);
+        setUsed(false);
+        allChildren.forEach(i -> ((PathTreeItem) i).dispose());
+    }
+
     private boolean isLoaded() {
         return loaded.get();
     }